@@ -0,0 +1,44 @@
+package play.modules.swagger
+
+import io.swagger.models.Swagger
+import play.api.Environment
+import play.routes.compiler.Route
+
+import scala.jdk.CollectionConverters._
+
+/**
+  * The generated application the benchmarks run against, wired the way [[SwaggerPluginImpl]] wires it.
+  */
+class BenchApplication(parallelism: Int = 1) {
+
+  val environment: Environment = Environment.simple()
+
+  val routesList: List[Route] = SwaggerPluginHelper.parseRoutes(BenchApplication.RoutesFile, "", environment)
+
+  val routes: RouteWrapper = RouteWrapper.fromRoutes(routesList)
+
+  val config: PlaySwaggerConfig = PlaySwaggerConfig.defaultReference.copy(readerParallelism = parallelism)
+
+  val scanner = new PlayApiScanner(config, routes, environment)
+
+  val reader = new PlayReader(config, routes, null)
+
+  val classes: java.util.Set[Class[_]] = scanner.classes()
+
+  def newCache(): ApiListingCache = new ApiListingCache(scanner, reader, config)
+
+  /**
+    * A fully built listing, the way the cache holds it.
+    */
+  lazy val listing: Swagger = newCache().listing(config.host)
+
+  /**
+    * The resource prefix of one controller in the middle of the listing.
+    */
+  lazy val resourcePath: String = listing.getPaths.keySet.asScala.toSeq.sorted.apply(listing.getPaths.size / 2)
+    .split('/').take(2).mkString("/")
+}
+
+object BenchApplication {
+  val RoutesFile = "bench.routes"
+}
@@ -0,0 +1,43 @@
+package play.modules.swagger
+
+import java.util.concurrent.TimeUnit
+import java.util.{List => JList}
+import java.util.{Map => JMap}
+
+import io.swagger.core.filter.SpecFilter
+import io.swagger.models.Swagger
+import org.openjdk.jmh.annotations._
+
+/**
+  * Filtering a built listing per request, as [[controllers.SwaggerBaseApiController]] does when a
+  * `swagger.filter` is configured.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class FilterBenchmark {
+
+  private var app: BenchApplication = _
+  private val filter = new PostsHiddenFilter
+  private val params: JMap[String, JList[String]] = java.util.Collections.emptyMap()
+  private val cookies: JMap[String, String] = java.util.Collections.emptyMap()
+  private val headers: JMap[String, JList[String]] = java.util.Collections.emptyMap()
+
+  @Setup
+  def setup(): Unit = {
+    app = new BenchApplication()
+    require(!app.listing.getPaths.isEmpty, "No paths in the generated listing")
+  }
+
+  @Benchmark
+  def filterListing(): Swagger = new SpecFilter().filter(app.listing, filter, params, cookies, headers)
+
+  @Benchmark
+  def filterResource(): Swagger = ApiListingCache.subListing(filterListing(), app.resourcePath)
+
+  @Benchmark
+  def subListing(): Swagger = ApiListingCache.subListing(app.listing, app.resourcePath)
+}
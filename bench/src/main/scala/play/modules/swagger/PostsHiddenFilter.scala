@@ -0,0 +1,24 @@
+package play.modules.swagger
+
+import java.util.{List => JList}
+import java.util.{Map => JMap}
+
+import io.swagger.core.filter.AbstractSpecFilter
+import io.swagger.model.ApiDescription
+import io.swagger.models.Operation
+
+/**
+  * Hides every POST operation, about a third of the generated ones.
+  */
+class PostsHiddenFilter extends AbstractSpecFilter {
+  override def isOperationAllowed(operation: Operation, api: ApiDescription, params: JMap[String, JList[String]],
+    cookies: JMap[String, String], headers: JMap[String, JList[String]]): Boolean = api.getMethod != "post"
+}
+
+/**
+  * [[PostsHiddenFilter]] treating all requests alike, so the filtered listing is cached.
+  */
+class CacheablePostsHiddenFilter extends PostsHiddenFilter with CacheableSwaggerSpecFilter {
+  override def cacheKey(params: JMap[String, JList[String]], cookies: JMap[String, String],
+    headers: JMap[String, JList[String]]): String = "all"
+}
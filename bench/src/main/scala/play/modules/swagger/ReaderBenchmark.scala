@@ -0,0 +1,35 @@
+package play.modules.swagger
+
+import java.util.concurrent.TimeUnit
+
+import io.swagger.models.Swagger
+import org.openjdk.jmh.annotations._
+
+/**
+  * Scanning and reading the generated controllers into a listing, as done on the first request for a host.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class ReaderBenchmark {
+
+  @Param(Array("1", "4"))
+  var parallelism: Int = 1
+
+  private var app: BenchApplication = _
+
+  @Setup
+  def setup(): Unit = app = new BenchApplication(parallelism)
+
+  @Benchmark
+  def scanClasses(): java.util.Set[Class[_]] = app.scanner.classes()
+
+  @Benchmark
+  def read(): Swagger = app.reader.newReader().read(app.classes)
+
+  @Benchmark
+  def buildListing(): RenderedListing = app.newCache().rendered(app.config.host)
+}
@@ -0,0 +1,55 @@
+package play.modules.swagger
+
+import java.util.concurrent.TimeUnit
+
+import akka.util.ByteString
+import io.swagger.util.Json
+import org.openjdk.jmh.annotations._
+
+/**
+  * Serializing a built listing, and serving documents from the rendered cache.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class RenderBenchmark {
+
+  private var app: BenchApplication = _
+  private var cache: ApiListingCache = _
+  private var json: ByteString = _
+
+  @Setup
+  def setup(): Unit = {
+    app = new BenchApplication()
+    cache = app.newCache()
+    json = cache.rendered(app.config.host).json.bytes
+  }
+
+  @Benchmark
+  def prettyJson(): String = Json.pretty(app.listing)
+
+  @Benchmark
+  def renderJson(): ByteString = new RenderedListing(app.listing).json.bytes
+
+  @Benchmark
+  def renderCompactJson(): ByteString = new RenderedListing(app.listing).compactJson.bytes
+
+  @Benchmark
+  def renderYaml(): ByteString = new RenderedListing(app.listing).yaml.bytes
+
+  @Benchmark
+  def gzipJson(): ByteString = RenderedDocument.gzip(json)
+
+  @Benchmark
+  def narrowResource(): RenderedListing = {
+    val full = cache.rendered(app.config.host)
+    new RenderedListing(ApiListingCache.withPaths(full.swagger, full.pathIndex.withPrefix(app.resourcePath)),
+      full.lastModified)
+  }
+
+  @Benchmark
+  def cachedResource(): ByteString = cache.resource(app.config.host, app.resourcePath).json.bytes
+}
@@ -0,0 +1,53 @@
+package play.modules.swagger
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+import play.routes.compiler.RoutesFileParser
+
+import scala.io.Source
+
+/**
+  * Parsing the generated routes file and mapping routes to listing paths.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class RoutesBenchmark {
+
+  private var app: BenchApplication = _
+  private var content: String = _
+
+  @Setup
+  def setup(): Unit = {
+    app = new BenchApplication()
+    val source = Source.fromInputStream(app.environment.resourceAsStream(BenchApplication.RoutesFile).get, "UTF-8")
+    try {
+      content = source.mkString
+    } finally {
+      source.close()
+    }
+  }
+
+  @Benchmark
+  def parseContent(): AnyRef = RoutesFileParser.parseContent(content, new File(BenchApplication.RoutesFile))
+
+  /**
+    * Served from the parsed file cache after the first call, as on plugin re-creation.
+    */
+  @Benchmark
+  def parseRoutesCached(): AnyRef = SwaggerPluginHelper.parseRoutes(BenchApplication.RoutesFile, "", app.environment)
+
+  @Benchmark
+  def indexRoutes(): RouteWrapper = RouteWrapper.fromRoutes(app.routesList)
+
+  @Benchmark
+  def pathFromRoute(blackhole: Blackhole): Unit = {
+    app.routesList.foreach(route => blackhole.consume(app.reader.getPathFromRoute(route.path, app.config.basePath)))
+  }
+}
@@ -0,0 +1,263 @@
+package play.modules.swagger
+
+import java.io.InputStream
+import java.lang.management.ManagementFactory
+import java.net.HttpURLConnection
+import java.net.ServerSocket
+import java.net.URL
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import play.api.Application
+import play.api.Environment
+import play.api.inject.guice.GuiceApplicationBuilder
+import play.api.test.TestServer
+import play.modules.swagger.util.Histogram
+
+import scala.concurrent.duration._
+import scala.io.Source
+import scala.jdk.CollectionConverters._
+import scala.util.Try
+
+/**
+  * Drives `/swagger.json` and `/api-docs/<resource>` of the generated application, served by Play's test server,
+  * with concurrent clients. Each scenario starts a new application, without a `swagger.filter`, with a plain
+  * filter or with a [[CacheableSwaggerSpecFilter]], and is measured on a cold cache, from the first request on,
+  * or on a warm one, after a warm-up period. Run with
+  *
+  * {{{
+  * sbt "bench/test:runMain play.modules.swagger.LoadTest --clients=32 --duration=20"
+  * }}}
+  *
+  * see [[LoadTest.Options]] for the other arguments.
+  */
+object LoadTest {
+
+  /**
+    * @param clients  number of concurrent clients, each sending its next request once the previous one completed
+    * @param warmup   time spent requesting before measuring, for warm scenarios
+    * @param duration time spent measuring
+    * @param paths    requested in turn by every client, `/swagger.json` and the resource of a generated controller
+    *                 by default
+    * @param filters  the filters to run with, among `none`, `filter` and `cacheable`
+    * @param caches   the cache states to start measuring from, among `cold` and `warm`
+    */
+  final case class Options(
+    clients: Int = 16,
+    warmup: FiniteDuration = 5.seconds,
+    duration: FiniteDuration = 10.seconds,
+    paths: Seq[String] = Seq("/swagger.json", s"/api-docs${defaultResource()}"),
+    filters: Seq[String] = Seq("none", "filter", "cacheable"),
+    caches: Seq[String] = Seq("cold", "warm"))
+
+  object Options {
+
+    /**
+      * Options set with `--name=value` arguments, lists being comma separated and durations in seconds.
+      */
+    def parse(args: Seq[String]): Options = args.foldLeft(Options()) { (options, arg) =>
+      arg.stripPrefix("--").split("=", 2) match {
+        case Array("clients", value) => options.copy(clients = value.toInt)
+        case Array("warmup", value) => options.copy(warmup = value.toInt.seconds)
+        case Array("duration", value) => options.copy(duration = value.toInt.seconds)
+        case Array("paths", value) => options.copy(paths = value.split(',').toSeq)
+        case Array("filters", value) => options.copy(filters = value.split(',').toSeq)
+        case Array("caches", value) => options.copy(caches = value.split(',').toSeq)
+        case _ => throw new IllegalArgumentException(s"Unknown argument $arg")
+      }
+    }
+  }
+
+  private val Filters: Map[String, Option[String]] = Map(
+    "none" -> None,
+    "filter" -> Some(classOf[PostsHiddenFilter].getName),
+    "cacheable" -> Some(classOf[CacheablePostsHiddenFilter].getName))
+
+  /**
+    * What was measured for one scenario. Latency is recorded for successful requests only, requests answered with
+    * a 503 while the listing is built are counted as busy. Allocation counts the threads of the server, not those of
+    * the clients.
+    */
+  final case class Result(scenario: String, requests: Long, busy: Long, errors: Long, seconds: Double,
+    latencyMicros: Histogram, allocatedBytes: Long, gcMillis: Long) {
+
+    def throughput: Double = requests / seconds
+
+    def row: String = f"$scenario%-16s $requests%9d $busy%7d $errors%7d $throughput%9.1f " +
+      f"${millis(0.5)}%8.2f ${millis(0.99)}%8.2f ${millis(0.999)}%8.2f ${latencyMicros.max / 1000d}%8.2f " +
+      f"${allocatedBytes / seconds / (1 << 20)}%10.1f ${allocatedBytes / math.max(requests, 1L) / 1024d}%8.1f $gcMillis%7d"
+
+    private def millis(quantile: Double): Double = latencyMicros.percentile(quantile) / 1000d
+  }
+
+  val Header: String = f"${"scenario"}%-16s ${"requests"}%9s ${"busy"}%7s ${"errors"}%7s ${"req/s"}%9s ${"p50 ms"}%8s " +
+    f"${"p99 ms"}%8s ${"p999 ms"}%8s ${"max ms"}%8s ${"alloc MB/s"}%10s ${"KB/req"}%8s ${"gc ms"}%7s"
+
+  def main(args: Array[String]): Unit = {
+    val options = Options.parse(args.toSeq)
+    println(s"$options")
+    val results = for {
+      filter <- options.filters
+      cache <- options.caches
+    } yield run(options, filter, cache == "warm")
+    println(Header)
+    results.foreach(result => println(result.row))
+  }
+
+  def run(options: Options, filter: String, warm: Boolean): Result = {
+    val scenario = s"$filter/${if (warm) "warm" else "cold"}"
+    val port = freePort()
+    val server = TestServer(port, application(port, Filters.getOrElse(filter,
+      throw new IllegalArgumentException(s"Unknown filter $filter"))))
+    server.start()
+    try {
+      val urls = options.paths.map(path => new URL(s"http://localhost:$port$path"))
+      if (warm) {
+        drive(urls, options.clients, options.warmup, new Histogram)
+        awaitReady(urls)
+      }
+      val latency = new Histogram
+      val gcBefore = gcMillis()
+      val allocatedBefore = allocations()
+      val start = System.nanoTime()
+      val outcome = drive(urls, options.clients, options.duration, latency)
+      val seconds = (System.nanoTime() - start) / 1e9
+      val allocated = outcome.allocations.collect {
+        case (thread, bytes) if !outcome.clients.contains(thread) => bytes - allocatedBefore.getOrElse(thread, 0L)
+      }.sum
+      val result = Result(scenario, latency.count, outcome.busy, outcome.errors, seconds, latency, allocated,
+        gcMillis() - gcBefore)
+      println(s"${result.row}")
+      result
+    } finally {
+      server.stop()
+    }
+  }
+
+  /**
+    * The generated application, routed by [[bench.Routes]].
+    */
+  private def application(port: Int, filter: Option[String]): Application = {
+    val settings: Map[String, Any] = Map(
+      "play.http.router" -> "bench.Routes",
+      "swagger.api.host" -> s"localhost:$port") ++ filter.map("swagger.filter" -> _)
+    new GuiceApplicationBuilder()
+      .configure(settings)
+      .bindings(new SwaggerModule)
+      .build()
+  }
+
+  /**
+    * Busy and failed requests of a run, the ids of its client threads and the bytes allocated by every live thread
+    * at its end.
+    */
+  private final case class Outcome(busy: Long, errors: Long, clients: Set[Long], allocations: Map[Long, Long])
+
+  /**
+    * Requests `urls` in turn from `clients` threads for `duration`, recording the latency of each successful
+    * request. Clients answered with a 503 wait as long as its `Retry-After` header asks.
+    */
+  private def drive(urls: Seq[URL], clients: Int, duration: FiniteDuration, latency: Histogram): Outcome = {
+    val deadline = System.nanoTime() + duration.toNanos
+    val pool = Executors.newFixedThreadPool(clients)
+    try {
+      val tasks = (0 until clients).map { client =>
+        new Callable[(Long, Long, Long)] {
+          override def call(): (Long, Long, Long) = {
+            var busy = 0L
+            var errors = 0L
+            var i = client
+            while (System.nanoTime() < deadline) {
+              val start = System.nanoTime()
+              get(urls(i % urls.size)) match {
+                case (200, _) =>
+                  latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start))
+                case (503, retryAfter) =>
+                  busy += 1
+                  val wait = retryAfter.fold(1000L)(TimeUnit.SECONDS.toMillis(_))
+                  Thread.sleep(math.max(0L, math.min(wait, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))))
+                case _ =>
+                  errors += 1
+              }
+              i += 1
+            }
+            (busy, errors, Thread.currentThread.getId)
+          }
+        }
+      }
+      val results = pool.invokeAll(tasks.asJava).asScala.map(_.get)
+      Outcome(results.map(_._1).sum, results.map(_._2).sum, results.map(_._3).toSet, allocations())
+    } finally {
+      pool.shutdownNow()
+      ()
+    }
+  }
+
+  /**
+    * Waits until every url is served, the listing having been built.
+    */
+  private def awaitReady(urls: Seq[URL]): Unit = {
+    while (!urls.forall(url => get(url)._1 == 200)) {
+      Thread.sleep(100)
+    }
+  }
+
+  /**
+    * Reads the whole response, keeping the connection alive for the next request. Returns its status, or 0 if the
+    * request failed, and its `Retry-After` seconds.
+    */
+  private def get(url: URL): (Int, Option[Long]) = {
+    val connection = url.openConnection().asInstanceOf[HttpURLConnection]
+    connection.setConnectTimeout(30000)
+    connection.setReadTimeout(30000)
+    try {
+      val status = connection.getResponseCode
+      val stream = if (status < 400) connection.getInputStream else connection.getErrorStream
+      if (stream != null) {
+        drain(stream)
+      }
+      (status, Option(connection.getHeaderField("Retry-After")).flatMap(value => Try(value.trim.toLong).toOption))
+    } catch {
+      case _: java.io.IOException => (0, None)
+    }
+  }
+
+  private def drain(stream: InputStream): Unit = {
+    val buffer = new Array[Byte](8192)
+    try {
+      while (stream.read(buffer) >= 0) {}
+    } finally {
+      stream.close()
+    }
+  }
+
+  private def threadMXBean: com.sun.management.ThreadMXBean =
+    ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+
+  /**
+    * Bytes allocated by each live thread. Threads ending while measuring take their allocations with them, the
+    * server's pools keep theirs alive.
+    */
+  private def allocations(): Map[Long, Long] = {
+    val threads = threadMXBean.getAllThreadIds
+    threads.zip(threadMXBean.getThreadAllocatedBytes(threads)).filter(_._2 > 0).toMap
+  }
+
+  private def gcMillis(): Long = ManagementFactory.getGarbageCollectorMXBeans.asScala.map(_.getCollectionTime).filter(_ > 0).sum
+
+  private def freePort(): Int = {
+    val socket = new ServerSocket(0)
+    try socket.getLocalPort finally socket.close()
+  }
+
+  /**
+    * The prefix of the controller routed in the middle of the generated routes file. Read as text, the parsed
+    * routes files being cached for the plugin.
+    */
+  private def defaultResource(): String = {
+    val source = Source.fromInputStream(Environment.simple().resourceAsStream(BenchApplication.RoutesFile).get, "UTF-8")
+    val lines = try source.getLines().toVector finally source.close()
+    "/" + lines(lines.size / 2).split("\\s+")(1).split('/')(1)
+  }
+}
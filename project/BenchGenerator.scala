@@ -0,0 +1,100 @@
+import sbt._
+
+/**
+  * Writes the synthetic application measured by the `bench` project: controllers with a number of routed
+  * operations each, returning models nested to a given depth, and the routes file binding them.
+  */
+object BenchGenerator {
+
+  final case class Shape(controllers: Int, routes: Int, depth: Int)
+
+  object Shape {
+
+    /**
+      * The shape set with `-Dbench.controllers`, `-Dbench.routes` and `-Dbench.depth`, 50 x 10 x 3 by default.
+      */
+    def fromSystemProperties: Shape = Shape(
+      controllers = sys.props.get("bench.controllers").fold(50)(_.toInt),
+      routes = sys.props.get("bench.routes").fold(10)(_.toInt),
+      depth = sys.props.get("bench.depth").fold(3)(_.toInt))
+  }
+
+  val Package = "bench.generated"
+
+  def sources(dir: File, shape: Shape): Seq[File] = {
+    (0 until shape.controllers).flatMap { c =>
+      val controller = dir / "bench" / "generated" / s"Controller$c.scala"
+      val models = dir / "bench" / "generated" / s"Models$c.scala"
+      IO.write(controller, controllerSource(c, shape))
+      IO.write(models, modelsSource(c, shape))
+      Seq(controller, models)
+    }
+  }
+
+  def routes(dir: File, shape: Shape): Seq[File] = {
+    val file = dir / "bench.routes"
+    val lines = for {
+      c <- 0 until shape.controllers
+      r <- 0 until shape.routes
+    } yield {
+      if (isPost(r)) {
+        s"POST    /c$c/op$r                $Package.Controller$c.op$r"
+      } else {
+        s"GET     /c$c/op$r/:id            $Package.Controller$c.op$r(id: Long, q: Option[String] ?= None)"
+      }
+    }
+    IO.writeLines(file, lines)
+    Seq(file)
+  }
+
+  private def isPost(route: Int): Boolean = route % 3 == 2
+
+  private def controllerSource(c: Int, shape: Shape): String = {
+    val operations = (0 until shape.routes).map { r =>
+      if (isPost(r)) {
+        s"""
+           |  @ApiOperation(value = "Create $c.$r", httpMethod = "POST", response = classOf[Model${c}_0])
+           |  @ApiImplicitParams(Array(
+           |    new ApiImplicitParam(name = "body", required = true, dataType = "$Package.Model${c}_0", paramType = "body")))
+           |  def op$r = Action(Ok("op$r"))
+           |""".stripMargin
+      } else {
+        s"""
+           |  @ApiOperation(value = "Get $c.$r", response = classOf[Model${c}_0], responseContainer = "List")
+           |  @ApiResponses(Array(new ApiResponse(code = 404, message = "Not found")))
+           |  def op$r(@ApiParam(value = "Id", required = true) id: Long, q: Option[String]) = Action(Ok(s"$$id $$q"))
+           |""".stripMargin
+      }
+    }
+    s"""package $Package
+       |
+       |import io.swagger.annotations._
+       |import javax.inject.Inject
+       |import play.api.mvc.AbstractController
+       |import play.api.mvc.ControllerComponents
+       |
+       |@Api(value = "/c$c", tags = Array("c$c"))
+       |class Controller$c @Inject()(components: ControllerComponents) extends AbstractController(components) {
+       |${operations.mkString}
+       |}
+       |""".stripMargin
+  }
+
+  private def modelsSource(c: Int, shape: Shape): String = {
+    val models = (0 until shape.depth).map { d =>
+      val child = if (d + 1 < shape.depth) s", child: Option[Model${c}_${d + 1}], children: Seq[Model${c}_${d + 1}]" else ""
+      s"""
+         |@ApiModel(description = "Model $c.$d")
+         |case class Model${c}_$d(
+         |  @ApiModelProperty(value = "Identifier", required = true) id: Long,
+         |  name: String,
+         |  tags: Seq[String],
+         |  attributes: Map[String, String]$child)
+         |""".stripMargin
+    }
+    s"""package $Package
+       |
+       |import io.swagger.annotations._
+       |${models.mkString}""".stripMargin
+  }
+}
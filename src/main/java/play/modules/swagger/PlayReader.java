@@ -23,6 +23,11 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,18 +35,62 @@ public class PlayReader {
 
     private static final String SUCCESSFUL_OPERATION = "successful operation";
 
+    private static final Pattern OPTION_TYPE = Pattern
+            .compile("(Option|scala\\.Option)\\s*\\[\\s*(Int|Long|Float|Double|Byte|Short|Char|Boolean)\\s*\\]\\s*$");
+
     private Swagger swagger;
     private PlaySwaggerConfig config;
     private RouteWrapper routes;
+    private final ModelConverters converters;
+    private final ModelCache models;
+    private final Map<String, Type> implicitTypes;
+    private final Map<String, Optional<Type>> optionTypes;
 
     public Swagger getSwagger() {
         return swagger;
     }
 
     public PlayReader(PlaySwaggerConfig config, RouteWrapper routes, Swagger swagger) {
+        this(config, routes, swagger, ModelConverters.getInstance());
+    }
+
+    /**
+     * A reader resolving models with {@code converters} rather than swagger-core's shared instance. Body
+     * parameters are still resolved by swagger-core's {@link ParameterProcessor}, which only uses the shared one.
+     */
+    public PlayReader(PlaySwaggerConfig config, RouteWrapper routes, Swagger swagger, ModelConverters converters) {
+        this(config, routes, swagger, converters, new ModelCache(converters), new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>());
+    }
+
+    private PlayReader(PlaySwaggerConfig config, RouteWrapper routes, Swagger swagger, ModelConverters converters,
+            ModelCache models, Map<String, Type> implicitTypes, Map<String, Optional<Type>> optionTypes) {
         this.routes = routes;
         this.config = config;
         this.swagger = swagger == null ? new Swagger() : swagger;
+        this.converters = converters;
+        this.models = models;
+        this.implicitTypes = implicitTypes;
+        this.optionTypes = optionTypes;
+    }
+
+    /**
+     * Creates a reader with the same configuration and routes that reads into a new {@link Swagger}, so
+     * several listings can be built without sharing a model.
+     */
+    public PlayReader newReader() {
+        return new PlayReader(config, routes, null, converters);
+    }
+
+    /**
+     * Names of the controllers with a route whose listing path starts with {@code pathPart}, worked out from the
+     * routes alone so that no controller class is loaded.
+     */
+    public List<String> controllersUnder(String pathPart) {
+        return routes.controllersRouted(route -> {
+            String path = getPathFromRoute(route.path(), config.basePath());
+            return path != null && path.startsWith(pathPart);
+        });
     }
 
     public Swagger read(Set<Class<?>> classes) {
@@ -54,12 +103,116 @@ public class PlayReader {
             }
         }
 
-        for (Class<?> cls : classes) {
-            read(cls);
+        if (config.readerIncremental()) {
+            readIncrementally(classes);
+        } else if (config.readerParallelism() > 1 && classes.size() > 1) {
+            readPartials(new ArrayList<>(classes)).forEach(this::merge);
+        } else {
+            for (Class<?> cls : classes) {
+                read(cls);
+            }
+        }
+        if (Logger.of("swagger").isDebugEnabled()) {
+            Logger.of("swagger").debug(String.format("Resolved models for %d classes: %s", classes.size(), models));
         }
         return swagger;
     }
 
+    /**
+     * Reads each class into its own partial {@link Swagger}, on a ForkJoin pool when reading in parallel. The
+     * partials are returned in iteration order, so merging them gives the same result as reading the classes
+     * one at a time. The partial readers share this reader's resolved models and types. The pool's workers use the
+     * caller's context class loader, so classes named in annotations resolve as they do when reading sequentially.
+     */
+    private List<Swagger> readPartials(List<Class<?>> classes) {
+        List<Swagger> result = new ArrayList<>(classes.size());
+        if (config.readerParallelism() <= 1 || classes.size() <= 1) {
+            for (Class<?> cls : classes) {
+                result.add(new PlayReader(config, routes, null, converters, models, implicitTypes, optionTypes)
+                        .read(cls));
+            }
+            return result;
+        }
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(config.readerParallelism(), forkJoinPool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            worker.setContextClassLoader(contextClassLoader);
+            return worker;
+        }, null, false);
+        try {
+            List<ForkJoinTask<Swagger>> partials = new ArrayList<>(classes.size());
+            for (Class<?> cls : classes) {
+                partials.add(pool.submit(() -> new PlayReader(config, routes, null, converters, models, implicitTypes,
+                        optionTypes).read(cls)));
+            }
+            for (ForkJoinTask<Swagger> partial : partials) {
+                result.add(partial.join());
+            }
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads only the classes whose fingerprint changed since they were last read, reusing the fragments kept in
+     * {@link ControllerFragments} for the others. Class files are hashed once for all fingerprints.
+     */
+    private void readIncrementally(Set<Class<?>> classes) {
+        List<Swagger> fragments = new ArrayList<>(classes.size());
+        List<Class<?>> changed = new ArrayList<>();
+        List<String> fingerprints = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Map<Class<?>, byte[]> classDigests = new HashMap<>();
+        for (Class<?> cls : classes) {
+            String fingerprint = ControllerFragments.fingerprint(cls, routes.forController(cls), config, classDigests);
+            Swagger fragment = ControllerFragments.get(converters, cls, fingerprint);
+            if (fragment == null) {
+                changed.add(cls);
+                fingerprints.add(fingerprint);
+                positions.add(fragments.size());
+            }
+            fragments.add(fragment);
+        }
+        List<Swagger> read = readPartials(changed);
+        for (int i = 0; i < read.size(); i++) {
+            ControllerFragments.put(converters, changed.get(i), fingerprints.get(i), read.get(i));
+            fragments.set(positions.get(i), read.get(i));
+        }
+        fragments.forEach(this::merge);
+        Logger.of("swagger").debug(String.format("Read %d of %d controllers, reused the others", changed.size(),
+                classes.size()));
+    }
+
+    /**
+     * Adds a partial listing to this reader's. Partials may be kept and merged again, so their paths are copied
+     * rather than added or updated in place.
+     */
+    private void merge(Swagger partial) {
+        if (partial.getTags() != null) {
+            for (Tag tag : partial.getTags()) {
+                swagger.tag(tag);
+            }
+        }
+        if (partial.getPaths() != null) {
+            for (Map.Entry<String, Path> entry : partial.getPaths().entrySet()) {
+                Path path = swagger.getPath(entry.getKey());
+                if (path == null) {
+                    path = new Path();
+                    swagger.path(entry.getKey(), path);
+                }
+                for (Map.Entry<HttpMethod, Operation> operation : entry.getValue().getOperationMap().entrySet()) {
+                    path.set(operation.getKey().name().toLowerCase(), operation.getValue());
+                }
+            }
+        }
+        if (partial.getDefinitions() != null) {
+            for (Map.Entry<String, Model> entry : partial.getDefinitions().entrySet()) {
+                swagger.model(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     public Swagger read(Class<?> cls) {
         return read(cls, false);
     }
@@ -110,93 +263,95 @@ public class PlayReader {
                 }
             }
 
-            // parse the method
-            Method methods[] = cls.getMethods();
-            for (Method method : methods) {
-                if (ReflectionUtils.isOverriddenMethod(method, cls)) {
-                    continue;
+            // parse the routed methods, in the order their routes are declared
+            Map<String, List<Route>> routedMethods = routes.forController(cls);
+            Map<String, List<Method>> methodsByName = new HashMap<>();
+            for (Method method : cls.getMethods()) {
+                if (routedMethods.containsKey(method.getName()) && !ReflectionUtils.isOverriddenMethod(method, cls)) {
+                    methodsByName.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(method);
                 }
-                // complete name as stored in route
-                String fullMethodName = getFullMethodName(cls, method);
-
-                if (!routes.exists(fullMethodName)) {
-                    continue;
-                }
-                Route route = routes.apply(fullMethodName);
-
-                String operationPath = getPathFromRoute(route.path(), config.basePath());
-
-                if (operationPath != null) {
+            }
+            Set<String> operationIds = new HashSet<>();
+            for (Map.Entry<String, List<Route>> routed : routedMethods.entrySet()) {
+                for (Method method : methodsByName.getOrDefault(routed.getKey(), Collections.emptyList())) {
+                    List<Route> methodRoutes = routed.getValue();
                     final ApiOperation apiOperation = ReflectionUtils.getAnnotation(method, ApiOperation.class);
+                    final MethodSnapshot snapshot = new MethodSnapshot(cls, method);
+                    for (Route route : methodRoutes) {
+                        String operationPath = getPathFromRoute(route.path(), config.basePath());
+
+                        if (operationPath != null) {
+                            String httpMethod = extractOperationMethod(apiOperation, method, route);
+                            Operation operation = null;
+                            if (apiOperation != null || httpMethod != null) {
+                                operation = parseMethod(cls, snapshot, route);
+                            }
 
-                    String httpMethod = extractOperationMethod(apiOperation, method, route);
-                    Operation operation = null;
-                    if (apiOperation != null || httpMethod != null) {
-                        operation = parseMethod(cls, method, route);
-                    }
-
-                    if (operation == null) {
-                        continue;
-                    }
-
-                    if (apiOperation != null) {
-                        for (Scheme scheme : parseSchemes(apiOperation.protocols())) {
-                            operation.scheme(scheme);
-                        }
-                    }
+                            if (operation == null) {
+                                continue;
+                            }
 
-                    if (operation.getSchemes() == null || operation.getSchemes().isEmpty()) {
-                        for (Scheme scheme : globalSchemes) {
-                            operation.scheme(scheme);
-                        }
-                    }
-                    // can't continue without a valid http method
-                    if (httpMethod != null) {
-                        if (apiOperation != null) {
-                            for (String tag : apiOperation.tags()) {
-                                if (!"".equals(tag)) {
-                                    operation.tag(tag);
-                                    getSwagger().tag(new Tag().name(tag));
+                            if (apiOperation != null) {
+                                for (Scheme scheme : parseSchemes(apiOperation.protocols())) {
+                                    operation.scheme(scheme);
                                 }
                             }
 
-                            operation.getVendorExtensions()
-                                    .putAll(BaseReaderUtils.parseExtensions(apiOperation.extensions()));
-                        }
-                        if (operation.getConsumes() == null) {
-                            for (String mediaType : consumes) {
-                                operation.consumes(mediaType);
-                            }
-                        }
-                        if (operation.getProduces() == null) {
-                            for (String mediaType : produces) {
-                                operation.produces(mediaType);
+                            if (operation.getSchemes() == null || operation.getSchemes().isEmpty()) {
+                                for (Scheme scheme : globalSchemes) {
+                                    operation.scheme(scheme);
+                                }
                             }
-                        }
+                            // can't continue without a valid http method
+                            if (httpMethod != null) {
+                                if (apiOperation != null) {
+                                    for (String tag : apiOperation.tags()) {
+                                        if (!"".equals(tag)) {
+                                            operation.tag(tag);
+                                            getSwagger().tag(new Tag().name(tag));
+                                        }
+                                    }
+
+                                    operation.getVendorExtensions()
+                                            .putAll(BaseReaderUtils.parseExtensions(apiOperation.extensions()));
+                                }
+                                if (operation.getConsumes() == null) {
+                                    for (String mediaType : consumes) {
+                                        operation.consumes(mediaType);
+                                    }
+                                }
+                                if (operation.getProduces() == null) {
+                                    for (String mediaType : produces) {
+                                        operation.produces(mediaType);
+                                    }
+                                }
 
-                        if (operation.getTags() == null) {
-                            for (String tagString : tags.keySet()) {
-                                operation.tag(tagString);
-                            }
-                        }
-                        // Only add global @Api securities if operation doesn't already have more
-                        // specific securities
-                        if (operation.getSecurity() == null) {
-                            for (SecurityRequirement security : securities) {
-                                operation.security(security);
+                                if (operation.getTags() == null) {
+                                    for (String tagString : tags.keySet()) {
+                                        operation.tag(tagString);
+                                    }
+                                }
+                                // Only add global @Api securities if operation doesn't already have more
+                                // specific securities
+                                if (operation.getSecurity() == null) {
+                                    for (SecurityRequirement security : securities) {
+                                        operation.security(security);
+                                    }
+                                }
+                                Path path = getSwagger().getPath(operationPath);
+                                if (path == null) {
+                                    path = new Path();
+                                    getSwagger().path(operationPath, path);
+                                }
+                                operation.operationId(uniqueOperationId(operation.getOperationId(), operationIds));
+                                path.set(httpMethod, operation);
+                                try {
+                                    readImplicitParameters(method, operation, cls);
+                                } catch (Exception e) {
+                                    throw e;
+                                }
                             }
                         }
-                        Path path = getSwagger().getPath(operationPath);
-                        if (path == null) {
-                            path = new Path();
-                            getSwagger().path(operationPath, path);
-                        }
-                        path.set(httpMethod, operation);
-                        try {
-                            readImplicitParameters(method, operation, cls);
-                        } catch (Exception e) {
-                            throw e;
-                        }
                     }
                 }
             }
@@ -205,6 +360,21 @@ public class PlayReader {
         return getSwagger();
     }
 
+    /**
+     * {@code operationId}, suffixed with a counter if another operation of the controller already uses it, as
+     * happens for a method bound to several routes.
+     */
+    private static String uniqueOperationId(String operationId, Set<String> used) {
+        if (operationId == null || used.add(operationId)) {
+            return operationId;
+        }
+        int suffix = 1;
+        while (!used.add(operationId + "_" + suffix)) {
+            suffix++;
+        }
+        return operationId + "_" + suffix;
+    }
+
     String getPathFromRoute(PathPattern pathPattern, String basePath) {
 
         StringBuilder sb = new StringBuilder();
@@ -438,25 +608,48 @@ public class PlayReader {
 
     }
 
-    private static Type typeFromString(String type, Class<?> cls) {
+    private Type typeFromString(String type, Class<?> cls) {
         final PrimitiveType primitive = PrimitiveType.fromName(type);
         if (primitive != null) {
             return primitive.getKeyClass();
         }
+        Type resolved = implicitTypes.get(type);
+        if (resolved != null) {
+            return resolved;
+        }
         try {
-            Type routeType = getOptionTypeFromString(type, cls);
-
-            if (routeType != null)
-                return routeType;
+            resolved = getOptionTypeFromString(type, cls);
 
-            return Thread.currentThread().getContextClassLoader().loadClass(type);
+            if (resolved == null) {
+                resolved = loadClass(type, cls);
+            }
+            implicitTypes.put(type, resolved);
+            return resolved;
         } catch (Exception e) {
             Logger.of("swagger").error(String.format("Failed to resolve '%s' into class", type), e);
         }
         return null;
     }
 
-    private Operation parseMethod(Class<?> cls, Method method, Route route) {
+    /**
+     * Loads a class named in an annotation with the context class loader, falling back to the loader of the
+     * annotated class when the reading thread's context loader can't see it, e.g. on a thread the application
+     * didn't create.
+     */
+    static Class<?> loadClass(String name, Class<?> cls) throws ClassNotFoundException {
+        ClassLoader context = Thread.currentThread().getContextClassLoader();
+        try {
+            return context.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            if (cls.getClassLoader() == null || cls.getClassLoader() == context) {
+                throw e;
+            }
+            return cls.getClassLoader().loadClass(name);
+        }
+    }
+
+    private Operation parseMethod(Class<?> cls, MethodSnapshot snapshot, Route route) {
+        final Method method = snapshot.method;
         Operation operation = new Operation();
 
         ApiOperation apiOperation = ReflectionUtils.getAnnotation(method, ApiOperation.class);
@@ -523,7 +716,7 @@ public class PlayReader {
             responseType = method.getGenericReturnType();
         }
         if (isValidResponse(responseType)) {
-            final Property property = ModelConverters.getInstance().readAsProperty(responseType);
+            final Property property = models.readAsProperty(responseType);
             if (property != null) {
                 final Property responseProperty = ContainerWrapper.wrapContainer(responseContainer, property);
                 final int responseCode = apiOperation == null ? 200 : apiOperation.code();
@@ -551,7 +744,7 @@ public class PlayReader {
                     response.schema(new RefProperty(apiResponse.reference()));
                 } else if (!isVoid(apiResponse.response())) {
                     responseType = apiResponse.response();
-                    final Property property = ModelConverters.getInstance().readAsProperty(responseType);
+                    final Property property = models.readAsProperty(responseType);
                     if (property != null) {
                         response.schema(ContainerWrapper.wrapContainer(apiResponse.responseContainer(), property));
                         appendModels(responseType);
@@ -563,7 +756,7 @@ public class PlayReader {
             operation.setDeprecated(true);
         }
 
-        List<Parameter> parameters = getParameters(cls, method, route);
+        List<Parameter> parameters = getParameters(snapshot, route);
 
         parameters.forEach(operation::parameter);
 
@@ -594,72 +787,52 @@ public class PlayReader {
         }
     }
 
-    private static Type getOptionTypeFromString(String simpleTypeName, Class<?> cls) {
+    /**
+     * Resolves Play's names for optional primitives, such as {@code Option[Int]}, which can't be told apart
+     * by reflection after erasure. Only names that match are remembered, for as long as this reader and its
+     * partial readers are in use.
+     */
+    private Type getOptionTypeFromString(String simpleTypeName, Class<?> cls) {
 
         if (simpleTypeName == null)
             return null;
-        String regex = "(Option|scala\\.Option)\\s*\\[\\s*(Int|Long|Float|Double|Byte|Short|Char|Boolean)\\s*\\]\\s*$";
-
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(simpleTypeName);
-        if (matcher.find()) {
-            String enhancedType = matcher.group(2);
-            return OptionTypeResolver.resolveOptionType(enhancedType, cls);
-        } else {
+        Matcher matcher = OPTION_TYPE.matcher(simpleTypeName);
+        if (!matcher.find())
             return null;
-        }
+        return optionTypes.computeIfAbsent(simpleTypeName,
+                name -> Optional.ofNullable(OptionTypeResolver.resolveOptionType(matcher.group(2), cls))).orElse(null);
     }
 
-    private Type getParamType(Class<?> cls, Method method, String simpleTypeName, int position) {
+    private Type getParamType(MethodSnapshot snapshot, String simpleTypeName, int position) {
 
         try {
-            Type type = getOptionTypeFromString(simpleTypeName, cls);
+            Type type = getOptionTypeFromString(simpleTypeName, snapshot.cls);
             if (type != null)
                 return type;
 
-            Type[] genericParameterTypes = method.getGenericParameterTypes();
-            return Json.mapper().getTypeFactory().constructType(genericParameterTypes[position], cls);
+            return snapshot.parameterType(position);
         } catch (Exception e) {
             Logger.of("swagger")
                     .error(String.format("Exception getting parameter type for method %s, param %s at position %d",
-                            method, simpleTypeName, position), e);
+                            snapshot.method, simpleTypeName, position), e);
             return null;
         }
 
     }
 
-    private List<Annotation> getParamAnnotations(Class<?> cls, Type[] genericParameterTypes,
-            Annotation[][] paramAnnotations, String simpleTypeName, int fieldPosition) {
-        try {
-            return Arrays.asList(paramAnnotations[fieldPosition]);
-        } catch (Exception e) {
-            Logger.of("swagger").error(String.format("Exception getting parameter type for %s at position %d",
-                    simpleTypeName, fieldPosition), e);
-            return null;
-        }
-    }
-
-    private List<Annotation> getParamAnnotations(Class<?> cls, Method method, String simpleTypeName,
-            int fieldPosition) {
-        Type[] genericParameterTypes = method.getGenericParameterTypes();
-        Annotation[][] paramAnnotations = method.getParameterAnnotations();
-        List<Annotation> annotations = getParamAnnotations(cls, genericParameterTypes, paramAnnotations, simpleTypeName,
-                fieldPosition);
+    private List<Annotation> getParamAnnotations(MethodSnapshot snapshot, String simpleTypeName, int fieldPosition) {
+        List<Annotation> annotations = snapshot.parameterAnnotations(fieldPosition);
         if (annotations != null) {
             return annotations;
         }
+        Logger.of("swagger").error(String.format("No parameter annotations for %s at position %d", simpleTypeName,
+                fieldPosition));
 
         // Fallback to type
-        for (int i = 0; i < genericParameterTypes.length; i++) {
-            annotations = getParamAnnotations(cls, genericParameterTypes, paramAnnotations, simpleTypeName, i);
-            if (annotations != null) {
-                return annotations;
-            }
-        }
-        return null;
+        return snapshot.parameterAnnotations(0);
     }
 
-    private List<Parameter> getParameters(Class<?> cls, Method method, Route route) {
+    private List<Parameter> getParameters(MethodSnapshot snapshot, Route route) {
         // TODO now consider only parameters defined in route, excluding body parameters
         // understand how to possibly infer body/form params e.g. from @BodyParser or
         // other annotation
@@ -680,7 +853,7 @@ public class PlayReader {
             if (def.startsWith("\"") && def.endsWith("\"")) {
                 def = def.substring(1, def.length() - 1);
             }
-            Type type = getParamType(cls, method, p.typeName(), fieldPosition);
+            Type type = getParamType(snapshot, p.typeName(), fieldPosition);
             Property schema = createProperty(type);
             if (route.path().has(p.name())) {
                 // it's a path param
@@ -696,7 +869,7 @@ public class PlayReader {
                     ((QueryParameter) parameter).setProperty(schema);
             }
             parameter.setName(p.name());
-            List<Annotation> annotations = getParamAnnotations(cls, method, p.typeName(), fieldPosition);
+            List<Annotation> annotations = getParamAnnotations(snapshot, p.typeName(), fieldPosition);
             ParameterProcessor.applyAnnotations(getSwagger(), parameter, type, annotations);
             parameters.add(parameter);
             fieldPosition++;
@@ -737,6 +910,13 @@ public class PlayReader {
     }
 
     protected Set<String> extractTags(Api api) {
+        return tagsOf(api);
+    }
+
+    /**
+     * The tags of an {@link Api}, those given explicitly or else the one derived from its value.
+     */
+    static Set<String> tagsOf(Api api) {
         Set<String> output = new LinkedHashSet<>();
 
         boolean hasExplicitTags = false;
@@ -757,7 +937,7 @@ public class PlayReader {
     }
 
     private Property createProperty(Type type) {
-        return enforcePrimitive(ModelConverters.getInstance().readAsProperty(type), 0);
+        return enforcePrimitive(converters.readAsProperty(type), 0);
     }
 
     private Property enforcePrimitive(Property in, int level) {
@@ -776,8 +956,7 @@ public class PlayReader {
     }
 
     private void appendModels(Type type) {
-        final Map<String, Model> models = ModelConverters.getInstance().readAll(type);
-        for (Map.Entry<String, Model> entry : models.entrySet()) {
+        for (Map.Entry<String, Model> entry : models.readAll(type).entrySet()) {
             getSwagger().model(entry.getKey(), entry.getValue());
         }
     }
@@ -795,7 +974,7 @@ public class PlayReader {
                     Class<?> cls = header.response();
 
                     if (!isVoid(cls)) {
-                        final Property property = ModelConverters.getInstance().readAsProperty(cls);
+                        final Property property = converters.readAsProperty(cls);
                         if (property != null) {
                             Property responseProperty = ContainerWrapper.wrapContainer(header.responseContainer(),
                                     property, ContainerWrapper.ARRAY, ContainerWrapper.LIST, ContainerWrapper.SET);
@@ -848,6 +1027,96 @@ public class PlayReader {
         return result;
     }
 
+    /**
+     * The reflective view of a routed method needed to resolve its parameters, taken once and shared by every
+     * route bound to the method.
+     */
+    static final class MethodSnapshot {
+        final Class<?> cls;
+        final Method method;
+        private final Type[] parameterTypes;
+        private final JavaType[] resolvedTypes;
+        private final List<List<Annotation>> parameterAnnotations;
+
+        MethodSnapshot(Class<?> cls, Method method) {
+            this.cls = cls;
+            this.method = method;
+            this.parameterTypes = method.getGenericParameterTypes();
+            this.resolvedTypes = new JavaType[parameterTypes.length];
+            Annotation[][] annotations = method.getParameterAnnotations();
+            this.parameterAnnotations = new ArrayList<>(annotations.length);
+            for (Annotation[] parameter : annotations) {
+                parameterAnnotations.add(Arrays.asList(parameter));
+            }
+        }
+
+        JavaType parameterType(int position) {
+            JavaType type = resolvedTypes[position];
+            if (type == null) {
+                type = Json.mapper().getTypeFactory().constructType(parameterTypes[position], cls);
+                resolvedTypes[position] = type;
+            }
+            return type;
+        }
+
+        List<Annotation> parameterAnnotations(int position) {
+            return position < parameterAnnotations.size() ? parameterAnnotations.get(position) : null;
+        }
+    }
+
+    /**
+     * Remembers what {@link ModelConverters} resolved for each type during a read, so a type used by many
+     * operations is only converted once. Response schemas and the models a type refers to are shared by every
+     * operation using them and must not be mutated; properties that are modified afterwards, such as parameter
+     * and header properties, are read directly instead.
+     */
+    static final class ModelCache {
+        private final ModelConverters converters;
+        private final Map<JavaType, Property> properties = new ConcurrentHashMap<>();
+        private final Map<JavaType, Map<String, Model>> models = new ConcurrentHashMap<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        ModelCache(ModelConverters converters) {
+            this.converters = converters;
+        }
+
+        Property readAsProperty(Type type) {
+            JavaType key = Json.mapper().getTypeFactory().constructType(type);
+            Property property = properties.get(key);
+            if (property != null) {
+                hits.incrementAndGet();
+                return property;
+            }
+            misses.incrementAndGet();
+            property = converters.readAsProperty(type);
+            if (property != null) {
+                Property existing = properties.putIfAbsent(key, property);
+                return existing != null ? existing : property;
+            }
+            return null;
+        }
+
+        Map<String, Model> readAll(Type type) {
+            JavaType key = Json.mapper().getTypeFactory().constructType(type);
+            Map<String, Model> resolved = models.get(key);
+            if (resolved != null) {
+                hits.incrementAndGet();
+                return resolved;
+            }
+            misses.incrementAndGet();
+            resolved = Collections.unmodifiableMap(converters.readAll(type));
+            Map<String, Model> existing = models.putIfAbsent(key, resolved);
+            return existing != null ? existing : resolved;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%d response types, %d model graphs)", hits.get(),
+                    misses.get(), properties.size(), models.size());
+        }
+    }
+
     enum ContainerWrapper {
         LIST("list") {
             @Override
@@ -17,19 +17,44 @@
 package controllers
 
 import java.io.StringWriter
+import java.time.Instant
+import java.time.temporal.ChronoUnit
+import java.util.Locale
+import java.util.{List => JList}
+import java.util.{Map => JMap}
 
+import akka.Done
+import akka.stream.scaladsl.Source
+import akka.stream.scaladsl.StreamConverters
 import akka.util.ByteString
+import com.fasterxml.jackson.core.JsonGenerator
 import io.swagger.core.filter.SpecFilter
+import io.swagger.core.filter.SwaggerSpecFilter
 import io.swagger.models.Swagger
 import io.swagger.util.Json
+import io.swagger.util.Yaml
 import javax.inject.Inject
 import javax.xml.bind.annotation._
 import play.api.Logger
 import play.api.http.ContentTypes
+import play.api.http.HeaderNames
+import play.api.http.HttpEntity
+import play.api.http.Status
 import play.api.mvc._
+import play.modules.swagger.ApiListingCache
+import play.modules.swagger.CacheableSwaggerSpecFilter
+import play.modules.swagger.RenderedDocument
+import play.modules.swagger.RenderedListing
 import play.modules.swagger.SwaggerPlugin
 
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.blocking
 import scala.jdk.CollectionConverters._
+import scala.util.Failure
+import scala.util.Success
+import scala.util.Try
 
 object ErrorResponse {
   val ERROR = 1
@@ -64,22 +89,85 @@ class ErrorResponse(@XmlElement var code: Int, @XmlElement var message: String)
 class ApiHelpController @Inject() (components: ControllerComponents, val swaggerPlugin: SwaggerPlugin)
   extends AbstractController(components) with SwaggerBaseApiController {
 
-  def getResources = Action { implicit request =>
-    val host: String = swaggerPlugin.config.host
-    val resourceListing: Swagger = getResourceListing(host)
-    val response: String = returnXml(request) match {
-      case true => toXmlString(resourceListing)
-      case false => toJsonString(resourceListing)
+  def getResources = Action.async { implicit request =>
+    timedRequest {
+      val host: String = swaggerPlugin.config.host
+      whenBuilt(host) {
+        cachedListing(host, None) match {
+          case Some(listing) => returnRendered(request, listing)
+          case None if isStreamable(request) =>
+            streamValue(request, getResourceListing(host))
+          case None =>
+            val resourceListing: Swagger = getResourceListing(host)
+            val response: String = returnXml(request) match {
+              case true => toXmlString(resourceListing)
+              case false => toDocumentString(request, resourceListing)
+            }
+            returnValue(request, response)
+        }
+      }
+    }
+  }
+
+  def getResource(path: String) = Action.async { implicit request =>
+    timedRequest {
+      val host: String = swaggerPlugin.config.host
+      whenResourceBuilt(host, path) {
+        cachedListing(host, Some(path)) match {
+          case Some(listing) => returnRendered(request, listing)
+          case None if isStreamable(request) => streamValue(request, getApiListing(path, host))
+          case None => serializeResource(path, host)
+        }
+      }
+    }
+  }
+
+  /**
+   * The names of the groups the listing is split into with `swagger.api.grouping`, as a JSON array
+   */
+  def getGroups = Action.async {
+    Future {
+      Ok(play.api.libs.json.Json.toJson(swaggerPlugin.apiListingCache.groups)).withHeaders(AccessControlAllowOrigin)
+    }(swaggerPlugin.executionContext)
+  }
+
+  /**
+   * The listing of one group, read from the group's controllers when first requested. Filtered on each request
+   * when a `swagger.filter` is configured.
+   */
+  def getGroup(name: String) = Action.async { implicit request =>
+    timedRequest {
+      val host: String = swaggerPlugin.config.host
+      val group = swaggerPlugin.apiListingCache.groupAsync(host, name)(swaggerPlugin.executionContext)
+      val filter = swaggerPlugin.swaggerSpecFilter
+      val rendered = filter.isEmpty && group.value.exists(_.toOption.flatten.exists(isRendered(request, _)))
+      whenReady(group, filter.isDefined, rendered) {
+        group.value.flatMap(_.get) match {
+          case None =>
+            val msg = new ErrorResponse(ErrorResponse.ERROR, "api group " + name + " not found")
+            NotFound(ByteString(toJsonString(msg))).as(JSON).withHeaders(AccessControlAllowOrigin)
+          case Some(listing) =>
+            filter match {
+              case None => returnRendered(request, listing)
+              case Some(filter) => returnValue(request, toDocumentString(request, filterListing(listing.swagger, filter, request)))
+            }
+        }
+      }
     }
-    returnValue(request, response)
   }
 
-  def getResource(path: String) = Action { implicit request =>
-    val host: String = swaggerPlugin.config.host
+  /**
+   * The measurements taken by the plugin, as a JSON object mapping each metric and statistic to its value
+   */
+  def getMetrics = Action {
+    Ok(play.api.libs.json.Json.toJson(swaggerPlugin.metrics.snapshot)).withHeaders(AccessControlAllowOrigin)
+  }
+
+  private def serializeResource(path: String, host: String)(implicit request: Request[_]): Result = {
     val apiListing: Swagger = getApiListing(path, host)
     val response: String = returnXml(request) match {
       case true => toXmlString(apiListing)
-      case false => toJsonString(apiListing)
+      case false => toDocumentString(request, apiListing)
     }
     Option(response) match {
       case Some(help) => returnValue(request, help)
@@ -99,31 +187,230 @@ trait SwaggerBaseApiController {
 
   def swaggerPlugin: SwaggerPlugin
 
-  protected def returnXml(request: Request[_]) = request.path.contains(".xml")
+  protected def returnXml(request: RequestHeader) = request.path.contains(".xml")
+
+  protected def returnYaml(request: RequestHeader) = request.path.contains(".yaml")
+
+  /**
+   * The listing to serve from the documents pre-rendered by the listing cache, if the request allows it.
+   * Filtered listings are only cached for filters declaring a cache key for the request.
+   */
+  protected def cachedListing(host: String, resourceName: Option[String])(implicit requestHeader: RequestHeader): Option[RenderedListing] = {
+    val cache = swaggerPlugin.apiListingCache
+    if (returnXml(requestHeader)) {
+      None
+    } else {
+      swaggerPlugin.swaggerSpecFilter match {
+        case None =>
+          Some(resourceName.fold(cache.rendered(host))(cache.resource(host, _)))
+        case Some(filter: CacheableSwaggerSpecFilter) =>
+          val (queryParams, cookies, headers) = filterArguments(requestHeader)
+          Option(filter.cacheKey(queryParams, cookies, headers)).map { key =>
+            cache.filtered(host, resourceName, key)(new SpecFilter().filter(_, filter, queryParams, cookies, headers))
+          }
+        case Some(_) =>
+          None
+      }
+    }
+  }
+
+  /**
+   * Whether listings that can't be served from the cache are streamed to the client
+   */
+  protected def isStreamable(request: RequestHeader): Boolean = swaggerPlugin.config.streaming && !returnXml(request)
+
+  /**
+   * Execution context running the blocking writes of streamed listings. The global context adds threads for
+   * writes waiting on slow clients, which would otherwise hold the plugin's few listing threads.
+   */
+  protected def streamingExecutionContext: ExecutionContext = ExecutionContext.global
+
+  /**
+   * Serves a request on the plugin's execution context once the listing for `host` is built. Until then requests
+   * are answered with a 503 right away, the first one starting the build, so request threads never wait for it.
+   */
+  protected def whenBuilt(host: String)(serve: => Result)(implicit requestHeader: RequestHeader): Future[Result] =
+    whenReady(swaggerPlugin.apiListingCache.renderedAsync(host)(swaggerPlugin.executionContext),
+      isFiltered(host, None), isRendered(host, None))(serve)
+
+  /**
+   * Like [[whenBuilt]], waiting only for the listing of resource `pathPart` when resources are read on their own.
+   */
+  protected def whenResourceBuilt(host: String, pathPart: String)(serve: => Result)(
+    implicit requestHeader: RequestHeader): Future[Result] = {
+    val cache = swaggerPlugin.apiListingCache
+    if (cache.lazyResources) {
+      whenReady(cache.resourceAsync(host, pathPart)(swaggerPlugin.executionContext), isFiltered(host, Some(pathPart)),
+        isRendered(host, Some(pathPart)))(serve)
+    } else {
+      whenBuilt(host)(serve)
+    }
+  }
+
+  /**
+   * Serves a request once `listing` is built, answering with a 503 until then and with a 500 if building it failed.
+   * Requests answered from documents already `rendered` are served on the calling thread, without queueing behind
+   * builds and filters. Requests to filter are run on the plugin's execution context, admitted through its filter
+   * bulkhead and answered with a 503 when it is full. A streamed response holds its slot until it is written. Others
+   * are run on the plugin's execution context.
+   */
+  protected def whenReady(listing: Future[_], filtered: Boolean, rendered: => Boolean)(serve: => Result)(
+    implicit requestHeader: RequestHeader): Future[Result] = {
+    implicit val ec: ExecutionContext = swaggerPlugin.executionContext
+    listing.value match {
+      case None =>
+        Future.successful(tooBusy(requestHeader, "api listing is being built, retry later"))
+      case Some(Failure(e)) =>
+        Future.successful(buildFailed(requestHeader, e))
+      case Some(Success(_)) if rendered =>
+        Future.fromTry(Try(serve))
+      case Some(Success(_)) if filtered =>
+        val metrics = swaggerPlugin.metrics
+        val submitted = System.nanoTime()
+        swaggerPlugin.filterBulkhead.holding {
+          metrics.time("filter.wait", System.nanoTime() - submitted)
+          watched(serve)
+        } match {
+          case Some(result) =>
+            metrics.count("filter.admitted", 1)
+            result
+          case None =>
+            metrics.count("filter.rejected", 1)
+            Future.successful(tooBusy(requestHeader, "too many filtered requests, retry later"))
+        }
+      case Some(Success(_)) =>
+        Future(serve)
+    }
+  }
+
+  /**
+   * The result along with a future completed once its body is written, failed or abandoned when it is streamed,
+   * or at once otherwise.
+   */
+  private def watched(result: Result): (Result, Future[_]) = result.body match {
+    case HttpEntity.Chunked(chunks, contentType) =>
+      val written = Promise[Done]()
+      val body = chunks.watchTermination() { (_, done) =>
+        written.completeWith(done)
+        ()
+      }
+      (result.copy(body = HttpEntity.Chunked(body, contentType)), written.future)
+    case _ =>
+      (result, Future.unit)
+  }
+
+  /**
+   * Whether the response to a request for the listing of `host`, optionally narrowed to `resourceName`, can be
+   * written from a cached listing's rendered documents, without building, filtering or serializing anything.
+   */
+  protected def isRendered(host: String, resourceName: Option[String])(implicit requestHeader: RequestHeader): Boolean = {
+    val cache = swaggerPlugin.apiListingCache
+    val listing = if (returnXml(requestHeader)) {
+      None
+    } else {
+      swaggerPlugin.swaggerSpecFilter match {
+        case None =>
+          resourceName.fold(cache.cachedRendered(host))(cache.cachedResource(host, _))
+        case Some(filter: CacheableSwaggerSpecFilter) =>
+          val (queryParams, cookies, headers) = filterArguments(requestHeader)
+          Option(filter.cacheKey(queryParams, cookies, headers)).flatMap(cache.cachedFiltered(host, resourceName, _))
+        case Some(_) =>
+          None
+      }
+    }
+    listing.exists(isRendered(requestHeader, _))
+  }
+
+  /**
+   * Whether the document of `listing` served for the request is rendered, and compressed if the client accepts gzip
+   */
+  protected def isRendered(requestHeader: RequestHeader, listing: RenderedListing): Boolean =
+    listing.renderedDocument(returnYaml(requestHeader), prettyPrint(requestHeader)).exists { document =>
+      !acceptsGzip(requestHeader) || document.isGzipped
+    }
+
+  /**
+   * Whether the request is run through the configured filter, rather than served from the filtered listings cache.
+   * Requests whose filtered listing isn't cached yet are, to build it.
+   */
+  protected def isFiltered(host: String, resourceName: Option[String])(implicit requestHeader: RequestHeader): Boolean =
+    swaggerPlugin.swaggerSpecFilter match {
+      case None => false
+      case Some(filter: CacheableSwaggerSpecFilter) if !returnXml(requestHeader) =>
+        val (queryParams, cookies, headers) = filterArguments(requestHeader)
+        Option(filter.cacheKey(queryParams, cookies, headers))
+          .flatMap(swaggerPlugin.apiListingCache.cachedFiltered(host, resourceName, _)).isEmpty
+      case Some(_) => true
+    }
+
+  /**
+   * A 503 asking the client to retry later
+   */
+  protected def tooBusy(requestHeader: RequestHeader, message: String): Result =
+    errorResult(requestHeader, Results.ServiceUnavailable, new ErrorResponse(ErrorResponse.TOO_BUSY, message))
+      .withHeaders(HeaderNames.RETRY_AFTER -> swaggerPlugin.config.busyRetryAfter.toString)
+
+  /**
+   * A 500 for a listing that failed to build. The failed build isn't cached, the next request starts another one.
+   */
+  protected def buildFailed(requestHeader: RequestHeader, cause: Throwable): Result = {
+    Logger("swagger").error("Failed to build the api listing", cause)
+    errorResult(requestHeader, Results.InternalServerError,
+      new ErrorResponse(ErrorResponse.ERROR, "api listing could not be built"))
+  }
+
+  private def errorResult(requestHeader: RequestHeader, status: Results.Status, msg: ErrorResponse): Result = {
+    val response = if (returnXml(requestHeader)) {
+      status(ByteString(toXmlString(msg))).as(ContentTypes.XML(Codec.utf_8))
+    } else {
+      status(ByteString(toJsonString(msg))).as(ContentTypes.JSON)
+    }
+    response.withHeaders(AccessControlAllowOrigin)
+  }
+
+  /**
+   * Query parameters, cookies and headers of the request in the form expected by a swagger spec filter
+   */
+  protected def filterArguments(requestHeader: RequestHeader): (JMap[String, JList[String]], JMap[String, String], JMap[String, JList[String]]) = {
+    val queryParams = requestHeader.queryString.map {case (key, value) => key -> value.toList.asJava}.asJava
+    val cookies = requestHeader.cookies.map {cookie => cookie.name -> cookie.value}.toMap.asJava
+    val headers = requestHeader.headers.toMap.map {case (key, value) => key -> value.toList.asJava}.asJava
+    (queryParams, cookies, headers)
+  }
 
   protected val AccessControlAllowOrigin = ("Access-Control-Allow-Origin", "*")
 
+  /**
+   * Times a request for documentation and records the size of its response
+   */
+  protected def timedRequest(result: => Future[Result]): Future[Result] = {
+    val metrics = swaggerPlugin.metrics
+    val start = System.nanoTime()
+    result.andThen {
+      case outcome =>
+        metrics.time("docs.request", System.nanoTime() - start)
+        outcome.foreach(_.body.contentLength.foreach(metrics.size("docs.response", _)))
+    }(swaggerPlugin.executionContext)
+  }
+
+  /**
+   * Applies the configured filter to a listing
+   */
+  protected def filterListing(specs: Swagger, filter: SwaggerSpecFilter, requestHeader: RequestHeader): Swagger = {
+    val (queryParams, cookies, headers) = filterArguments(requestHeader)
+    swaggerPlugin.metrics.timed("filter.apply")(new SpecFilter().filter(specs, filter, queryParams, cookies, headers))
+  }
+
   /**
    * Get a list of all top level resources
    */
   protected def getResourceListing(host: String)(implicit requestHeader: RequestHeader): Swagger = {
     Logger("swagger").debug("ApiHelpInventory.getRootResources")
-    val queryParams = (for((key, value) <- requestHeader.queryString) yield {
-      (key, value.toList.asJava)
-    }).asJava
-    val cookies = (for(cookie <- requestHeader.cookies) yield {
-      (cookie.name, cookie.value)
-    }).toMap.asJava
-    val headers = (for((key, value) <- requestHeader.headers.toMap) yield {
-      (key, value.toList.asJava)
-    }).asJava
-
-    val f = new SpecFilter
 
     val specs = swaggerPlugin.apiListingCache.listing(host)
 
     swaggerPlugin.swaggerSpecFilter match {
-      case Some(filter) => f.filter(specs, filter, queryParams, cookies, headers)
+      case Some(filter) => filterListing(specs, filter, requestHeader)
       case None => specs
     }
   }
@@ -133,20 +420,17 @@ trait SwaggerBaseApiController {
    */
   protected def getApiListing(resourceName: String, host: String)(implicit requestHeader: RequestHeader): Swagger = {
     Logger("swagger").debug("ApiHelpInventory.getResource(%s)".format(resourceName))
-    val f = new SpecFilter
-    val queryParams = requestHeader.queryString.map {case (key, value) => key -> value.toList.asJava}
-    val cookies = requestHeader.cookies.map {cookie => cookie.name -> cookie.value}.toMap.asJava
-    val headers = requestHeader.headers.toMap.map {case (key, value) => key -> value.toList.asJava}.asJava
     val pathPart = resourceName
 
-    val specs = swaggerPlugin.apiListingCache.listing(host)
-
-    val clone = swaggerPlugin.swaggerSpecFilter match {
-      case Some(filter) => f.filter(specs, filter, queryParams.asJava, cookies, headers)
-      case None => specs
+    swaggerPlugin.swaggerSpecFilter match {
+      case Some(filter) if swaggerPlugin.apiListingCache.lazyResources =>
+        filterListing(swaggerPlugin.apiListingCache.resource(host, pathPart).swagger, filter, requestHeader)
+      case Some(filter) =>
+        val specs = swaggerPlugin.apiListingCache.listing(host)
+        ApiListingCache.subListing(filterListing(specs, filter, requestHeader), pathPart)
+      case None =>
+        swaggerPlugin.apiListingCache.resource(host, pathPart).swagger
     }
-    clone.setPaths(clone.getPaths.asScala.filter(_._1.startsWith(pathPart)).asJava)
-    clone
   }
 
   // TODO: looks like this is broken for anything other than strings
@@ -166,9 +450,121 @@ trait SwaggerBaseApiController {
   protected def returnValue(request: Request[_], obj: Any): Result = {
     val response = returnXml(request) match {
       case true => XmlResponse(obj)
+      case false if returnYaml(request) => YamlResponse(obj)
       case false => JsonResponse(obj)
     }
-    response.withHeaders(AccessControlAllowOrigin)
+    response.body match {
+      case HttpEntity.Strict(data, _) =>
+        val etag = RenderedDocument.etag(data)
+        if (isNotModified(request, etag, None)) {
+          Results.NotModified.withHeaders(HeaderNames.ETAG -> etag, AccessControlAllowOrigin)
+        } else {
+          response.withHeaders(HeaderNames.ETAG -> etag, AccessControlAllowOrigin)
+        }
+      case _ =>
+        response.withHeaders(AccessControlAllowOrigin)
+    }
+  }
+
+  /**
+   * Serves a listing straight from its pre-rendered bytes, without serializing the model. Clients accepting gzip
+   * get the pre-compressed variant.
+   */
+  protected def returnRendered(request: Request[_], listing: RenderedListing): Result = {
+    val document = if (returnYaml(request)) listing.yaml else listing.jsonDocument(prettyPrint(request))
+    val gzip = acceptsGzip(request)
+    val etag = if (gzip) document.gzippedEtag else document.etag
+    val headers = Map(
+      HeaderNames.ETAG -> etag,
+      HeaderNames.LAST_MODIFIED -> listing.httpLastModified,
+      HeaderNames.VARY -> HeaderNames.ACCEPT_ENCODING,
+      AccessControlAllowOrigin)
+    if (isNotModified(request, etag, Some(listing.lastModified))) {
+      Result(ResponseHeader(Status.NOT_MODIFIED, headers), HttpEntity.NoEntity)
+    } else if (gzip) {
+      Result(ResponseHeader(Status.OK, headers + (HeaderNames.CONTENT_ENCODING -> "gzip")),
+        HttpEntity.Strict(document.gzipped, Some(document.contentType)))
+    } else {
+      Result(ResponseHeader(Status.OK, headers), HttpEntity.Strict(document.bytes, Some(document.contentType)))
+    }
+  }
+
+  /**
+   * Whether the `Accept-Encoding` header of the request allows a gzip-encoded response
+   */
+  protected def acceptsGzip(request: RequestHeader): Boolean = {
+    request.headers.get(HeaderNames.ACCEPT_ENCODING).exists { header =>
+      val codings = header.split(',').map { coding =>
+        val params = coding.split(';').map(_.trim)
+        val quality = params.drop(1).collectFirst {
+          case param if param.startsWith("q=") => Try(param.drop(2).toDouble).getOrElse(0d)
+        }
+        params(0).toLowerCase(Locale.ENGLISH) -> quality.getOrElse(1d)
+      }.toMap
+      codings.get("gzip").orElse(codings.get("x-gzip")).orElse(codings.get("*")).exists(_ > 0)
+    }
+  }
+
+  /**
+   * Evaluates `If-None-Match`, falling back to `If-Modified-Since` when the former is absent
+   */
+  protected def isNotModified(request: RequestHeader, etag: String, lastModified: Option[Instant]): Boolean = {
+    request.headers.get(HeaderNames.IF_NONE_MATCH) match {
+      case Some(ifNoneMatch) => RenderedDocument.matches(ifNoneMatch, etag)
+      case None =>
+        (request.headers.get(HeaderNames.IF_MODIFIED_SINCE).flatMap(RenderedDocument.parseHttpDate), lastModified) match {
+          case (Some(since), Some(modified)) => !modified.truncatedTo(ChronoUnit.SECONDS).isAfter(since)
+          case _ => false
+        }
+    }
+  }
+
+  /**
+   * Streams a listing as chunks written by a Jackson generator, so the whole document is never held in memory.
+   * The stream fails if writing does, so clients see an aborted response rather than a truncated document.
+   */
+  protected def streamValue(request: RequestHeader, data: AnyRef): Result = {
+    val (writer, contentType) = if (returnYaml(request)) {
+      (Yaml.pretty(), RenderedDocument.YamlContentType)
+    } else if (prettyPrint(request)) {
+      (Json.pretty(), ContentTypes.JSON)
+    } else {
+      (Json.mapper().writer(), ContentTypes.JSON)
+    }
+    val written = Promise[Unit]()
+    val source = StreamConverters.asOutputStream().mapMaterializedValue { out =>
+      written.completeWith(Future {
+        blocking {
+          try {
+            writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, data)
+          } finally {
+            out.close()
+          }
+        }
+      }(streamingExecutionContext))
+    }.concat(Source.fromFuture(written.future).flatMapConcat { _ =>
+      Source.empty[ByteString]
+    })
+    Results.Ok.chunked(source).as(contentType).withHeaders(AccessControlAllowOrigin)
+  }
+
+  protected def toDocumentString(request: Request[_], data: Any): String = swaggerPlugin.metrics.timed("render.uncached") {
+    if (returnYaml(request)) {
+      toYamlString(data)
+    } else if (prettyPrint(request)) {
+      toJsonString(data)
+    } else {
+      toCompactJsonString(data)
+    }
+  }
+
+  /**
+   * Whether JSON is pretty printed, as asked by the `pretty` query parameter or else as configured on the scanner
+   */
+  protected def prettyPrint(request: RequestHeader): Boolean = request.getQueryString("pretty") match {
+    case Some("true") => true
+    case Some("false") => false
+    case _ => swaggerPlugin.scanner.getPrettyPrint
   }
 
   def toJsonString(data: Any): String = {
@@ -179,7 +575,27 @@ trait SwaggerBaseApiController {
     }
   }
 
+  def toCompactJsonString(data: Any): String = {
+    if (data.getClass.equals(classOf[String])) {
+      data.asInstanceOf[String]
+    } else {
+      Json.mapper().writeValueAsString(data)
+    }
+  }
+
   protected def JsonResponse(data: Any): Result = {
     Results.Ok(ByteString(toJsonString(data))).as(ContentTypes.JSON)
   }
+
+  def toYamlString(data: Any): String = {
+    if (data.getClass.equals(classOf[String])) {
+      data.asInstanceOf[String]
+    } else {
+      Yaml.pretty().writeValueAsString(data)
+    }
+  }
+
+  protected def YamlResponse(data: Any): Result = {
+    Results.Ok(ByteString(toYamlString(data))).as(RenderedDocument.YamlContentType)
+  }
 }
@@ -1,28 +1,387 @@
 package play.modules.swagger
 
+import java.time.Instant
+import java.util.concurrent.atomic.AtomicReference
+
+import akka.util.ByteString
 import io.swagger.config._
+import io.swagger.models.Path
 import io.swagger.models.Swagger
+import io.swagger.util.Json
 import javax.inject.Inject
 import play.api.Logger
-import scala.collection.mutable
+import play.modules.swagger.util.SingleFlightCache
+
+import scala.collection.immutable.ListMap
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.blocking
+import scala.jdk.CollectionConverters._
+import scala.util.Success
+
+/**
+  * Builds and caches the listings served by [[controllers.ApiHelpController]]. When a `prebuilt` document is
+  * given, listings are read from it and the scanner and reader are never used.
+  *
+  * Cached listings can be dropped with [[invalidate]], or rebuilt in the background with [[refresh]], in which
+  * case requests keep being served the current listings until the new ones replace them.
+  *
+  * With a `grouping`, the listing is also served split into groups. Each group is read from its own controllers
+  * the first time it is requested, without building the full listing.
+  *
+  * With `swagger.api.reader.lazyResources` and the [[PlayApiScanner]], resource listings are likewise read from the
+  * controllers routed under the resource rather than narrowed from the full listing, and cached apart from it.
+  */
+class ApiListingCache @Inject()(scanner: Scanner, reader: PlayReader, config: PlaySwaggerConfig,
+  prebuilt: Option[ByteString] = None, metrics: SwaggerMetrics = SwaggerMetrics.Noop,
+  grouping: Option[ListingGrouping] = None) {
+  private val generation = new AtomicReference(new Generation)
+  private val refreshLock = new Object
+
+  private val resourceScanner: Option[PlayApiScanner] = scanner match {
+    case playScanner: PlayApiScanner if config.readerLazyResources && prebuilt.isEmpty => Some(playScanner)
+    case _ => None
+  }
+
+  def this(scanner: Scanner, reader: PlayReader) = this(scanner, reader, PlaySwaggerConfig.defaultReference)
+
+  def listing(host: String): Swagger = rendered(host).swagger
+
+  /**
+    * The full listing for `host` along with its pre-rendered documents. The first caller builds the listing,
+    * concurrent callers wait for it.
+    */
+  def rendered(host: String): RenderedListing = generation.get.rendered(host)
+
+  /**
+    * The full listing for `host`, built on `ec` unless it is cached or being built already. The future is
+    * completed at once when the listing is cached, so callers can tell whether [[rendered]] would block.
+    */
+  def renderedAsync(host: String)(implicit ec: ExecutionContext): Future[RenderedListing] =
+    generation.get.renderedAsync(host)
+
+  /**
+    * The full listing for `host` if it is cached, without building it.
+    */
+  def cachedRendered(host: String): Option[RenderedListing] = generation.get.cachedRendered(host)
+
+  /**
+    * The listing for `host` narrowed to the paths starting with `pathPart`, along with its pre-rendered documents.
+    */
+  def resource(host: String, pathPart: String): RenderedListing = generation.get.resource(host, pathPart)
+
+  /**
+    * The listing for `host` narrowed to `pathPart`, built on `ec` unless it is cached or being built already.
+    */
+  def resourceAsync(host: String, pathPart: String)(implicit ec: ExecutionContext): Future[RenderedListing] =
+    generation.get.resourceAsync(host, pathPart)
+
+  /**
+    * The listing for `host` narrowed to `pathPart` if it is cached, without building it.
+    */
+  def cachedResource(host: String, pathPart: String): Option[RenderedListing] =
+    generation.get.cachedResource(host, pathPart)
+
+  /**
+    * Whether resource listings are read on their own instead of being narrowed from the full listing.
+    */
+  def lazyResources: Boolean = resourceScanner.isDefined
+
+  /**
+    * The listing for `host`, optionally narrowed to `pathPart`, as filtered for the requests sharing `key`.
+    * `filter` is applied to the full listing the first time a key is seen.
+    */
+  def filtered(host: String, pathPart: Option[String], key: String)(filter: Swagger => Swagger): RenderedListing =
+    generation.get.filtered(host, pathPart, key)(filter)
+
+  /**
+    * The listing for `host`, optionally narrowed to `pathPart`, as filtered for `key` if it is cached, without
+    * filtering it.
+    */
+  def cachedFiltered(host: String, pathPart: Option[String], key: String): Option[RenderedListing] =
+    generation.get.cachedFiltered(host, pathPart, key)
 
-class ApiListingCache @Inject()(scanner: Scanner, reader: PlayReader) {
-  private val cache: mutable.Map[String, Swagger] = mutable.Map.empty
+  /**
+    * The names of the groups the listing is split into, empty without a grouping or with a prebuilt listing.
+    */
+  def groups: Seq[String] = generation.get.groupIndex.keys.toSeq
 
-  def listing(host: String): Swagger = {
-    cache.getOrElseUpdate(host, {
-      Logger("swagger").debug("Loading API metadata")
+  /**
+    * The listing of group `name` for `host`, built on `ec` unless it is cached or being built already. Completed
+    * with None for an unknown group.
+    */
+  def groupAsync(host: String, name: String)(implicit ec: ExecutionContext): Future[Option[RenderedListing]] =
+    generation.get.groupAsync(host, name)
 
-      val classes = scanner.classes()
-      val swagger = reader.read(classes)
-      val result = scanner match {
-        case config: SwaggerConfig =>
-          config.configure(swagger)
+  /**
+    * Drops every cached listing, so the next request for each one builds it again.
+    */
+  def invalidate(): Unit = generation.set(new Generation)
+
+  /**
+    * Builds the listings of the hosts currently cached on `ec`, then replaces every cached listing with them at
+    * once. Until then, and if the build fails, requests are served the current listings. Refreshes run one at a
+    * time.
+    */
+  def refresh()(implicit ec: ExecutionContext): Future[Unit] = Future {
+    blocking {
+      refreshLock.synchronized {
+        val next = new Generation
+        generation.get.hosts.foreach(next.rendered)
+        generation.set(next)
+        Logger("swagger").debug("Refreshed API metadata")
+      }
+    }
+  }
+
+  private def load(document: ByteString, host: String): RenderedListing = metrics.timed("listing.load") {
+    Logger("swagger").debug("Loading prebuilt API metadata")
+
+    val swagger = Json.mapper().readValue(document.toArray, classOf[Swagger])
+    if (swagger.getHost == host) {
+      new RenderedListing(swagger, Instant.now(), Some(document), metrics)
+    } else {
+      swagger.setHost(host)
+      new RenderedListing(swagger, Instant.now(), None, metrics)
+    }
+  }
+
+  private def build(host: String): RenderedListing = metrics.timed("listing.build") {
+    Logger("swagger").debug("Loading API metadata")
+
+    read(host, metrics.timed("scanner.classes")(scanner.classes()))
+  }
+
+  private def buildGroup(host: String, name: String, group: ListingGroup): RenderedListing =
+    metrics.timed("listing.group") {
+      Logger("swagger").debug(s"Loading API metadata of group $name")
+
+      val listing = read(host, new java.util.LinkedHashSet[Class[_]](group.classes.asJava))
+      group.paths.fold(listing) { paths =>
+        val kept = new java.util.LinkedHashMap[String, Path]()
+        for ((path, value) <- listing.swagger.getPaths.asScala if paths.contains(path)) {
+          kept.put(path, value)
+        }
+        new RenderedListing(ApiListingCache.withPaths(listing.swagger, kept), listing.lastModified, None, metrics)
+      }
+    }
+
+  /**
+    * Reads only `controllers`, those with a route under `pathPart`, loading no other controller class.
+    */
+  private def buildResource(host: String, pathPart: String, controllers: Seq[String],
+    playScanner: PlayApiScanner): RenderedListing =
+    metrics.timed("listing.resource") {
+      Logger("swagger").debug(s"Loading API metadata under $pathPart")
+
+      val classes = metrics.timed("scanner.classes")(playScanner.classes(controllers))
+      val listing = read(host, classes)
+      new RenderedListing(ApiListingCache.withPaths(listing.swagger, listing.pathIndex.withPrefix(pathPart)),
+        listing.lastModified, None, metrics)
+    }
+
+  private def read(host: String, classes: java.util.Set[Class[_]]): RenderedListing = {
+    val swagger = metrics.timed("reader.read")(reader.newReader().read(classes))
+    val result = scanner match {
+      case swaggerConfig: SwaggerConfig =>
+        swaggerConfig.configure(swagger)
+      case _ =>
+        swagger
+    }
+    result.setHost(host)
+    new RenderedListing(result, Instant.now(), None, metrics)
+  }
+
+  /**
+    * Counts the requests for a cached listing of `kind` and, through the returned loader, the misses.
+    */
+  private def counted(kind: String)(load: => RenderedListing): () => RenderedListing = {
+    metrics.count(s"cache.$kind.requests", 1)
+    missed(kind)(load)
+  }
+
+  private def missed(kind: String)(load: => RenderedListing): () => RenderedListing = () => {
+    metrics.count(s"cache.$kind.misses", 1)
+    load
+  }
+
+  /**
+    * A set of cached listings, all replaced together.
+    */
+  private final class Generation {
+    private val listings = new SingleFlightCache[String, RenderedListing](config.cacheMaxHosts)
+    private val resources = new SingleFlightCache[(String, String), RenderedListing](config.cacheMaxResources)
+    private val routedControllers = new SingleFlightCache[String, Seq[String]](config.cacheMaxResources)
+    private val unroutedListings = new SingleFlightCache[String, RenderedListing](config.cacheMaxHosts)
+    private val filteredListings =
+      new SingleFlightCache[(String, Option[String], String), RenderedListing](config.cacheMaxFiltered)
+
+    private val groupListings =
+      new SingleFlightCache[(String, String), Option[RenderedListing]](config.cacheMaxResources)
+
+    private val groupIndexes = new SingleFlightCache[Unit, ListMap[String, ListingGroup]](1)
+
+    def hosts: Seq[String] = listings.keys
+
+    /**
+      * The groups of the scanned controllers, found when first needed.
+      */
+    lazy val groupIndex: ListMap[String, ListingGroup] = (grouping, prebuilt) match {
+      case (Some(g), None) =>
+        g.groups(metrics.timed("scanner.classes")(scanner.classes()).asScala.toSeq)
+      case _ =>
+        ListMap.empty
+    }
+
+    /**
+      * Unknown names are answered once the groups are found, without being cached, so they can't evict the
+      * listings of actual groups.
+      */
+    def groupAsync(host: String, name: String)(implicit ec: ExecutionContext): Future[Option[RenderedListing]] = {
+      metrics.count("cache.group.requests", 1)
+      val index = groupIndexes.getFutureAsync(())(groupIndex)
+      index.value match {
+        case Some(Success(groups)) => group(host, name, groups)
+        case _ => index.flatMap(group(host, name, _))
+      }
+    }
+
+    private def group(host: String, name: String, groups: ListMap[String, ListingGroup])(
+      implicit ec: ExecutionContext): Future[Option[RenderedListing]] = groups.get(name) match {
+      case None =>
+        Future.successful(None)
+      case Some(group) =>
+        groupListings.getFutureAsync((host, name)) {
+          metrics.count("cache.group.misses", 1)
+          Some(buildGroup(host, name, group))
+        }
+    }
+
+    def rendered(host: String): RenderedListing = {
+      val load = counted("listing")(listing(host))
+      listings.get(host)(load())
+    }
+
+    /**
+      * Not counted as a request, callers go on with [[rendered]] once the listing is built.
+      */
+    def renderedAsync(host: String)(implicit ec: ExecutionContext): Future[RenderedListing] = {
+      val load = missed("listing")(listing(host))
+      listings.getFutureAsync(host)(load())
+    }
+
+    def cachedRendered(host: String): Option[RenderedListing] = listings.peek(host)
+
+    private def listing(host: String): RenderedListing = prebuilt match {
+      case Some(document) => ApiListingCache.this.load(document, host)
+      case None => build(host)
+    }
+
+    def resource(host: String, pathPart: String): RenderedListing = resourceScanner match {
+      case Some(playScanner) if controllersUnder(pathPart).isEmpty =>
+        unroutedListings.get(host)(unrouted(host, playScanner))
+      case _ =>
+        val load = counted("resource")(resourceListing(host, pathPart))
+        resources.get((host, pathPart))(load())
+    }
+
+    /**
+      * Not counted as a request, callers go on with [[resource]] once the listing is built.
+      */
+    def resourceAsync(host: String, pathPart: String)(implicit ec: ExecutionContext): Future[RenderedListing] =
+      resourceScanner match {
+        case Some(playScanner) if controllersUnder(pathPart).isEmpty =>
+          unroutedListings.getFutureAsync(host)(unrouted(host, playScanner))
         case _ =>
-          swagger
+          val load = missed("resource")(resourceListing(host, pathPart))
+          resources.getFutureAsync((host, pathPart))(load())
+      }
+
+    def cachedResource(host: String, pathPart: String): Option[RenderedListing] = resourceScanner match {
+      case Some(_) if routedControllers.peek(pathPart).exists(_.isEmpty) => unroutedListings.peek(host)
+      case _ => resources.peek((host, pathPart))
+    }
+
+    /**
+      * The controllers with a route under `pathPart`, worked out from the routes once for this generation.
+      */
+    private def controllersUnder(pathPart: String): Seq[String] =
+      routedControllers.get(pathPart)(reader.controllersUnder(pathPart).asScala.toList)
+
+    /**
+      * The empty listing of resources no route falls under, when resources are read on their own. Built once for
+      * every such resource of a host, without reading any controller, and cached apart from actual resources so
+      * requests for arbitrary paths can't evict them.
+      */
+    private def unrouted(host: String, playScanner: PlayApiScanner): RenderedListing =
+      buildResource(host, "", Nil, playScanner)
+
+    private def resourceListing(host: String, pathPart: String): RenderedListing = resourceScanner match {
+      case Some(playScanner) =>
+        buildResource(host, pathPart, controllersUnder(pathPart), playScanner)
+      case None =>
+        val full = rendered(host)
+        new RenderedListing(ApiListingCache.withPaths(full.swagger, full.pathIndex.withPrefix(pathPart)),
+          full.lastModified, None, metrics)
+    }
+
+    def filtered(host: String, pathPart: Option[String], key: String)(filter: Swagger => Swagger): RenderedListing = {
+      val load = counted("filtered") {
+        pathPart match {
+          case None =>
+            val full = rendered(host)
+            new RenderedListing(metrics.timed("filter.apply")(filter(full.swagger)), full.lastModified, None, metrics)
+          case Some(part) if lazyResources =>
+            val listing = resource(host, part)
+            new RenderedListing(metrics.timed("filter.apply")(filter(listing.swagger)), listing.lastModified, None,
+              metrics)
+          case Some(part) =>
+            val all = filtered(host, None, key)(filter)
+            new RenderedListing(ApiListingCache.withPaths(all.swagger, all.pathIndex.withPrefix(part)),
+              all.lastModified, None, metrics)
+        }
       }
-      result.setHost(host)
-      result
-    })
+      filteredListings.get((host, pathPart, key))(load())
+    }
+
+    def cachedFiltered(host: String, pathPart: Option[String], key: String): Option[RenderedListing] =
+      filteredListings.peek((host, pathPart, key))
+  }
+}
+
+object ApiListingCache {
+
+  /**
+    * Shallow copy of `swagger` keeping only the paths starting with `pathPart`. The source listing is left untouched.
+    */
+  def subListing(swagger: Swagger, pathPart: String): Swagger = {
+    val paths = new java.util.LinkedHashMap[String, Path]()
+    for ((name, path) <- swagger.getPaths.asScala if name.startsWith(pathPart)) {
+      paths.put(name, path)
+    }
+    withPaths(swagger, paths)
+  }
+
+  private[swagger] def withPaths(swagger: Swagger, paths: java.util.Map[String, Path]): Swagger = {
+    val copy = new Swagger()
+    copy.setSwagger(swagger.getSwagger)
+    copy.setInfo(swagger.getInfo)
+    copy.setHost(swagger.getHost)
+    copy.setBasePath(swagger.getBasePath)
+    copy.setTags(swagger.getTags)
+    copy.setSchemes(swagger.getSchemes)
+    copy.setConsumes(swagger.getConsumes)
+    copy.setProduces(swagger.getProduces)
+    copy.setSecurity(swagger.getSecurity)
+    copy.setPaths(paths)
+    copy.setSecurityDefinitions(swagger.getSecurityDefinitions)
+    copy.setDefinitions(swagger.getDefinitions)
+    copy.setParameters(swagger.getParameters)
+    copy.setResponses(swagger.getResponses)
+    copy.setExternalDocs(swagger.getExternalDocs)
+    for (extensions <- Option(swagger.getVendorExtensions); (name, value) <- extensions.asScala) {
+      copy.setVendorExtension(name, value)
+    }
+    copy
   }
 }
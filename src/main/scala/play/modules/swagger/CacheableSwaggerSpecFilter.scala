@@ -0,0 +1,21 @@
+package play.modules.swagger
+
+import io.swagger.core.filter.SwaggerSpecFilter
+import javax.annotation.Nullable
+
+/**
+  * A [[SwaggerSpecFilter]] whose decisions depend on a small part of the request only, such as a tenant or role
+  * header. Listings filtered for a key are cached, so later requests with the same key skip filtering and
+  * serialization altogether.
+  */
+trait CacheableSwaggerSpecFilter extends SwaggerSpecFilter {
+
+  /**
+    * Returns a key shared by all requests this filter treats identically, or null if the listing filtered for
+    * this request must not be cached.
+    */
+  @Nullable def cacheKey(
+    params: java.util.Map[String, java.util.List[String]],
+    cookies: java.util.Map[String, String],
+    headers: java.util.Map[String, java.util.List[String]]): String
+}
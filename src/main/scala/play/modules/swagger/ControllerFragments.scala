@@ -0,0 +1,145 @@
+package play.modules.swagger
+
+import java.lang.reflect.GenericArrayType
+import java.lang.reflect.ParameterizedType
+import java.lang.reflect.Type
+import java.lang.reflect.TypeVariable
+import java.lang.reflect.WildcardType
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+import com.fasterxml.jackson.annotation.JsonSubTypes
+import io.swagger.annotations.ApiImplicitParams
+import io.swagger.annotations.ApiModel
+import io.swagger.annotations.ApiOperation
+import io.swagger.annotations.ApiResponses
+import io.swagger.converter.ModelConverters
+import io.swagger.models.Swagger
+import io.swagger.util.PrimitiveType
+import play.routes.compiler.Route
+
+import scala.collection.mutable
+import scala.util.Try
+import scala.jdk.CollectionConverters._
+
+/**
+  * The listing fragments read for each controller, kept across plugin instances so that a rebuild, such as the
+  * one following a dev mode reload, only reads the controllers that changed. A fragment is reused as long as the
+  * fingerprint of its controller is the same, and must not be mutated.
+  *
+  * Fragments are kept apart for each model converters registry they were resolved with, so applications using
+  * their own converters never share them, and are dropped with the registry.
+  */
+object ControllerFragments {
+
+  private val fragments =
+    Collections.synchronizedMap(new WeakHashMap[ModelConverters, ConcurrentHashMap[String, (String, Swagger)]]())
+
+  private def readWith(converters: ModelConverters): ConcurrentHashMap[String, (String, Swagger)] =
+    fragments.computeIfAbsent(converters, _ => new ConcurrentHashMap[String, (String, Swagger)]())
+
+  /**
+    * The fragment last read for `cls` with `converters`, if it was read with the same `fingerprint`, or null.
+    */
+  def get(converters: ModelConverters, cls: Class[_], fingerprint: String): Swagger =
+    readWith(converters).get(cls.getName) match {
+      case (`fingerprint`, fragment) => fragment
+      case _ => null
+    }
+
+  def put(converters: ModelConverters, cls: Class[_], fingerprint: String, fragment: Swagger): Unit = {
+    readWith(converters).put(cls.getName, (fingerprint, fragment))
+    ()
+  }
+
+  def clear(): Unit = fragments.clear()
+
+  /**
+    * A digest of everything reading `cls` depends on: the reader configuration, the routes bound to the
+    * controller and the bytecode of the controller and of the application classes its operations refer to,
+    * including those named by implicit parameters' data types, followed through their fields, getters, parent and
+    * declared subtypes. Classes from libraries are not expected to change between reloads and are left out.
+    *
+    * The digest of each class file is kept in `classDigests`, so controllers sharing models fingerprinted with the
+    * same map read and hash each model's bytecode once.
+    */
+  def fingerprint(cls: Class[_], routes: java.util.Map[String, java.util.List[Route]], config: PlaySwaggerConfig,
+    classDigests: java.util.Map[Class[_], Array[Byte]]): String = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    digest.update(config.toString.getBytes(StandardCharsets.UTF_8))
+    routes.asScala.toSeq.sortBy(_._1).foreach { case (_, methodRoutes) =>
+      methodRoutes.asScala.foreach(route => digest.update(route.toString.getBytes(StandardCharsets.UTF_8)))
+    }
+
+    val visited = mutable.LinkedHashSet[Class[_]]()
+    val seen = mutable.HashSet[Type](cls)
+    val pending = mutable.Queue[Type](cls)
+    def follow(types: Type*): Unit = types.filter(seen.add).foreach(pending += _)
+    while (pending.nonEmpty) {
+      pending.dequeue() match {
+        case c: Class[_] if c.isArray => follow(c.getComponentType)
+        case c: Class[_] if isApplicationClass(c, cls) =>
+          visited += c
+          if (c == cls) {
+            c.getMethods.filter(method => routes.containsKey(method.getName)).foreach { method =>
+              follow(method.getGenericReturnType)
+              follow(method.getGenericParameterTypes.toIndexedSeq: _*)
+              Option(method.getAnnotation(classOf[ApiOperation])).foreach(operation => follow(operation.response))
+              Option(method.getAnnotation(classOf[ApiResponses])).foreach(_.value.foreach(response => follow(response.response)))
+              Option(method.getAnnotation(classOf[ApiImplicitParams])).foreach(_.value.foreach { param =>
+                follow(param.dataTypeClass)
+                follow(implicitType(param.dataType, cls).toSeq: _*)
+              })
+            }
+          } else {
+            Option(c.getGenericSuperclass).foreach(follow(_))
+            c.getDeclaredFields.foreach(field => follow(field.getGenericType))
+            c.getMethods.filter(_.getParameterCount == 0).foreach(method => follow(method.getGenericReturnType))
+            Option(c.getAnnotation(classOf[ApiModel])).foreach(model => follow(model.parent +: model.subTypes.toIndexedSeq: _*))
+            Option(c.getAnnotation(classOf[JsonSubTypes])).foreach(subTypes => follow(subTypes.value.toIndexedSeq.map(_.value): _*))
+          }
+        case p: ParameterizedType => follow(p.getRawType +: p.getActualTypeArguments.toIndexedSeq: _*)
+        case a: GenericArrayType => follow(a.getGenericComponentType)
+        case w: WildcardType => follow(w.getUpperBounds.toIndexedSeq: _*)
+        case v: TypeVariable[_] => follow(v.getBounds.toIndexedSeq: _*)
+        case _ =>
+      }
+    }
+    visited.foreach(c => digest.update(classDigest(c, classDigests)))
+    Base64.getUrlEncoder.withoutPadding.encodeToString(digest.digest())
+  }
+
+  def fingerprint(cls: Class[_], routes: java.util.Map[String, java.util.List[Route]], config: PlaySwaggerConfig): String =
+    fingerprint(cls, routes, config, new java.util.HashMap[Class[_], Array[Byte]]())
+
+  /**
+    * The class an implicit parameter's data type names, loaded as the reader does, if it names one.
+    */
+  private def implicitType(dataType: String, cls: Class[_]): Option[Class[_]] =
+    if (dataType.isEmpty || PrimitiveType.fromName(dataType) != null) None
+    else Try(PlayReader.loadClass(dataType, cls)).toOption
+
+  /**
+    * The digest of the class file of `c`, empty if it can't be found.
+    */
+  private def classDigest(c: Class[_], classDigests: java.util.Map[Class[_], Array[Byte]]): Array[Byte] =
+    Option(classDigests.get(c)).getOrElse {
+      val digest = MessageDigest.getInstance("SHA-256")
+      Option(c.getClassLoader.getResourceAsStream(c.getName.replace('.', '/') + ".class")).foreach { stream =>
+        SwaggerPluginHelper.readFully(stream).asByteBuffers.foreach(digest.update)
+      }
+      val result = digest.digest()
+      classDigests.put(c, result)
+      result
+    }
+
+  private def isApplicationClass(c: Class[_], controller: Class[_]): Boolean =
+    c.getClassLoader == controller.getClassLoader && codeSource(c) == codeSource(controller)
+
+  private def codeSource(c: Class[_]): Option[java.net.URL] =
+    Option(c.getProtectionDomain.getCodeSource).flatMap(source => Option(source.getLocation))
+}
@@ -0,0 +1,90 @@
+package play.modules.swagger
+
+import io.swagger.annotations.Api
+
+import scala.collection.immutable.ListMap
+import scala.jdk.CollectionConverters._
+
+/**
+  * The controllers a group of the listing is read from, and the listing paths it is narrowed to, if any.
+  */
+final case class ListingGroup(classes: Seq[Class[_]], paths: Option[Set[String]] = None)
+
+/**
+  * Splits the documented controllers into groups, each served as a listing of its own by
+  * [[controllers.ApiHelpController.getGroup]] and read only when first requested.
+  */
+trait ListingGrouping {
+
+  /**
+    * The groups of `classes` by name, in the order they are listed.
+    */
+  def groups(classes: Seq[Class[_]]): ListMap[String, ListingGroup]
+}
+
+object ListingGrouping {
+
+  /**
+    * Name of the group holding what no other group covers.
+    */
+  val Default = "default"
+
+  /**
+    * The grouping configured with `swagger.api.grouping`, `tag` or `include`, if any.
+    */
+  def apply(config: PlaySwaggerConfig, routes: RouteWrapper, reader: PlayReader,
+    includePrefixes: () => Seq[String]): Option[ListingGrouping] = config.grouping match {
+    case None | Some("") => None
+    case Some("tag") => Some(ByTag)
+    case Some("include") => Some(new ByInclude(includePrefixes, routes, reader, config.basePath))
+    case Some(other) => throw new IllegalArgumentException(s"Unknown swagger.api.grouping '$other'")
+  }
+
+  /**
+    * One group per tag of the controllers' [[Api]] annotation. A controller with several tags is in each of their
+    * groups, one without any in the default group.
+    */
+  object ByTag extends ListingGrouping {
+    override def groups(classes: Seq[Class[_]]): ListMap[String, ListingGroup] = {
+      val tagged = classes.flatMap { cls =>
+        val tags = Option(cls.getAnnotation(classOf[Api])).map(PlayReader.tagsOf(_).asScala.toSeq).getOrElse(Nil)
+        (if (tags.isEmpty) Seq(Default) else tags).map(_ -> cls)
+      }
+      group(tagged.map { case (tag, cls) => (tag, (cls, None)) })
+    }
+  }
+
+  /**
+    * One group per routes file included by the application's routes file, named by its prefix, narrowed to the
+    * paths routed through it. Routes declared in the application's routes file itself are in the default group,
+    * listed first, the others following in the order they are included.
+    */
+  final class ByInclude(prefixes: () => Seq[String], routes: RouteWrapper, reader: PlayReader, basePath: String)
+    extends ListingGrouping {
+
+    override def groups(classes: Seq[Class[_]]): ListMap[String, ListingGroup] = {
+      val included = prefixes().map(_.stripPrefix("/").stripSuffix("/")).filter(_.nonEmpty).distinct
+      val byLength = included.sortBy(-_.length)
+      val routed = for {
+        cls <- classes
+        route <- routes.forController(cls).asScala.values.flatMap(_.asScala)
+      } yield {
+        val path = route.path.toString
+        val name = byLength.find(prefix => path == prefix || path.startsWith(prefix + "/")).getOrElse(Default)
+        (name, (cls, Some(reader.getPathFromRoute(route.path, basePath))))
+      }
+      val order = (Default +: included).zipWithIndex.toMap
+      group(routed.sortBy { case (name, _) => order(name) })
+    }
+  }
+
+  private def group(members: Seq[(String, (Class[_], Option[String]))]): ListMap[String, ListingGroup] = {
+    val names = members.map(_._1).distinct
+    val byName = members.groupBy(_._1)
+    ListMap(names.map { name =>
+      val entries = byName(name).map(_._2)
+      val paths = entries.map(_._2)
+      name -> ListingGroup(entries.map(_._1).distinct, if (paths.forall(_.isDefined)) Some(paths.flatten.toSet) else None)
+    }: _*)
+  }
+}
@@ -0,0 +1,34 @@
+package play.modules.swagger
+
+import io.swagger.models.Path
+
+import scala.jdk.CollectionConverters._
+
+/**
+  * A sorted index over the paths of a listing. Prefix lookups are answered with a range query instead of a scan
+  * over every path, and keep the declaration order of the listing.
+  */
+final class PathIndex(paths: java.util.Map[String, Path]) {
+
+  private val index = {
+    val sorted = new java.util.TreeMap[String, (Int, Path)]()
+    if (paths != null) {
+      for (((name, path), ordinal) <- paths.asScala.zipWithIndex) {
+        sorted.put(name, (ordinal, path))
+      }
+    }
+    sorted
+  }
+
+  /**
+    * The paths starting with `prefix`, in the order they were declared.
+    */
+  def withPrefix(prefix: String): java.util.Map[String, Path] = {
+    val matches = index.subMap(prefix, true, prefix + Char.MaxValue, false).asScala.toSeq.sortBy(_._2._1)
+    val result = new java.util.LinkedHashMap[String, Path](math.max(matches.size * 2, 2))
+    for ((name, (_, path)) <- matches) {
+      result.put(name, path)
+    }
+    result
+  }
+}
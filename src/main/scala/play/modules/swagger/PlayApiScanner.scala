@@ -75,7 +75,13 @@ class PlayApiScanner @Inject()(config: PlaySwaggerConfig, routes: RouteWrapper,
       (route.call.packageName.toSeq :+ route.call.controller).mkString(".")
     }.distinct
 
+    classes(controllers)
+  }
 
+  /**
+    * The controllers among the named ones annotated as Swagger API's.
+    */
+  def classes(controllers: Seq[String]): java.util.Set[Class[_]] = {
     val list = controllers.collect {
       case className: String if {
         try {
@@ -92,10 +98,11 @@ class PlayApiScanner @Inject()(config: PlaySwaggerConfig, routes: RouteWrapper,
     }
 
     list.toSet.asJava
-
   }
 
-  override def getPrettyPrint(): Boolean = true
+  @volatile private var prettyPrint = config.prettyPrint
+
+  override def getPrettyPrint(): Boolean = prettyPrint
 
-  override def setPrettyPrint(x: Boolean): Unit = ()
+  override def setPrettyPrint(x: Boolean): Unit = prettyPrint = x
 }
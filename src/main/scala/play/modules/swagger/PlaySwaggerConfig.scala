@@ -15,7 +15,26 @@ case class PlaySwaggerConfig(
   host: String,
   basePath: String,
   schemes: Seq[String],
-  filterClass: Option[String]
+  filterClass: Option[String],
+  cacheMaxHosts: Int = 16,
+  cacheMaxResources: Int = 256,
+  cacheMaxFiltered: Int = 64,
+  prebuilt: Option[String] = None,
+  readerParallelism: Int = 1,
+  readerIncremental: Boolean = false,
+  readerLazyResources: Boolean = false,
+  streaming: Boolean = false,
+  prettyPrint: Boolean = true,
+  watchRoutes: Boolean = false,
+  metricsClass: Option[String] = None,
+  metricsJmx: Boolean = false,
+  executorThreads: Int = 2,
+  busyRetryAfter: Int = 5,
+  filterMaxConcurrent: Int = 2,
+  filterMaxQueued: Int = 16,
+  warmup: Boolean = false,
+  isolated: Boolean = false,
+  grouping: Option[String] = None
 ) {
   // Java APIs for reading the configuration
   def getSchemes: Array[String] = schemes.toArray
@@ -37,7 +56,26 @@ object PlaySwaggerConfig {
       termsOfServiceUrl = configuration.get[String]("swagger.api.info.termsOfServiceUrl"),
       license = configuration.get[String]("swagger.api.info.license"),
       licenseUrl = configuration.get[String]("swagger.api.info.licenseUrl"),
-      filterClass = configuration.get[Option[String]]("swagger.filter")
+      filterClass = configuration.get[Option[String]]("swagger.filter"),
+      cacheMaxHosts = configuration.get[Int]("swagger.api.cache.maxHosts"),
+      cacheMaxResources = configuration.get[Int]("swagger.api.cache.maxResources"),
+      cacheMaxFiltered = configuration.get[Int]("swagger.api.cache.maxFiltered"),
+      prebuilt = configuration.get[Option[String]]("swagger.api.prebuilt"),
+      readerParallelism = configuration.get[Int]("swagger.api.reader.parallelism"),
+      readerIncremental = configuration.get[Boolean]("swagger.api.reader.incremental"),
+      readerLazyResources = configuration.get[Boolean]("swagger.api.reader.lazyResources"),
+      streaming = configuration.get[Boolean]("swagger.api.streaming"),
+      prettyPrint = configuration.get[Boolean]("swagger.api.prettyPrint"),
+      watchRoutes = configuration.get[Boolean]("swagger.api.watchRoutes"),
+      metricsClass = configuration.get[Option[String]]("swagger.api.metrics.class"),
+      metricsJmx = configuration.get[Boolean]("swagger.api.metrics.jmx"),
+      executorThreads = configuration.get[Int]("swagger.api.executor.threads"),
+      busyRetryAfter = configuration.get[Int]("swagger.api.executor.retryAfter"),
+      filterMaxConcurrent = configuration.get[Int]("swagger.api.filtering.maxConcurrent"),
+      filterMaxQueued = configuration.get[Int]("swagger.api.filtering.maxQueued"),
+      warmup = configuration.get[Boolean]("swagger.api.warmup"),
+      isolated = configuration.get[Boolean]("swagger.api.isolated"),
+      grouping = configuration.get[Option[String]]("swagger.api.grouping")
     )
   }
 
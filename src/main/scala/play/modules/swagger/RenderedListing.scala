@@ -0,0 +1,152 @@
+package play.modules.swagger
+
+import java.io.ByteArrayOutputStream
+import java.security.MessageDigest
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.format.DateTimeFormatter
+import java.util.Base64
+import java.util.zip.Deflater
+import java.util.zip.GZIPOutputStream
+
+import akka.util.ByteString
+import io.swagger.models.Swagger
+import io.swagger.util.Json
+import io.swagger.util.Yaml
+import play.api.http.ContentTypes
+import play.modules.swagger.util.Memo
+
+/**
+  * A listing together with its serialized documents. Each document is rendered at most once and the
+  * resulting bytes are shared by every request for the same listing, so the model must not be mutated
+  * once it has been wrapped.
+  */
+final class RenderedListing(val swagger: Swagger, val lastModified: Instant, prerenderedJson: Option[ByteString] = None,
+  metrics: SwaggerMetrics = SwaggerMetrics.Noop) {
+
+  def this(swagger: Swagger) = this(swagger, Instant.now())
+
+  private val jsonMemo = new Memo(() => prerenderedJson match {
+    case Some(document) => new RenderedDocument(document, ContentTypes.JSON)
+    case None => render("render.json", ContentTypes.JSON)(Json.pretty().writeValueAsBytes(swagger))
+  })
+
+  private val compactJsonMemo =
+    new Memo(() => render("render.compactJson", ContentTypes.JSON)(Json.mapper().writeValueAsBytes(swagger)))
+
+  private val yamlMemo =
+    new Memo(() => render("render.yaml", RenderedDocument.YamlContentType)(Yaml.pretty().writeValueAsBytes(swagger)))
+
+  def json: RenderedDocument = jsonMemo.get
+
+  def compactJson: RenderedDocument = compactJsonMemo.get
+
+  def jsonDocument(pretty: Boolean): RenderedDocument = if (pretty) json else compactJson
+
+  def yaml: RenderedDocument = yamlMemo.get
+
+  /**
+    * The YAML or JSON document if it is rendered already, without rendering it.
+    */
+  def renderedDocument(yaml: Boolean, pretty: Boolean): Option[RenderedDocument] = {
+    val memo = if (yaml) yamlMemo else if (pretty) jsonMemo else compactJsonMemo
+    if (memo.isComputed) Some(memo.get) else None
+  }
+
+  /**
+    * Index used to narrow this listing to a resource.
+    */
+  lazy val pathIndex: PathIndex = new PathIndex(swagger.getPaths)
+
+  /**
+    * The value of the `Last-Modified` header for documents of this listing.
+    */
+  lazy val httpLastModified: String = RenderedDocument.httpDate(lastModified)
+
+  /**
+    * Renders the JSON document served by default, and indexes paths, ahead of the first request.
+    */
+  def prerender(pretty: Boolean): Unit = {
+    jsonDocument(pretty)
+    pathIndex
+    httpLastModified
+    ()
+  }
+
+  private def render(metric: String, contentType: String)(serialize: => Array[Byte]): RenderedDocument = {
+    val bytes = metrics.timed(metric)(serialize)
+    metrics.size(metric, bytes.length.toLong)
+    new RenderedDocument(ByteString.fromArrayUnsafe(bytes), contentType)
+  }
+}
+
+/**
+  * A serialized listing along with the validators used to answer conditional requests.
+  */
+final class RenderedDocument(val bytes: ByteString, val contentType: String) {
+
+  /**
+    * A strong entity tag derived from the document content, computed along with the document.
+    */
+  val etag: String = RenderedDocument.etag(bytes)
+
+  /**
+    * The entity tag of the gzip-encoded representation, which must differ from the identity one.
+    */
+  val gzippedEtag: String = etag.dropRight(1) + "-gzip\""
+
+  private val gzip = new Memo(() => RenderedDocument.gzip(bytes))
+
+  /**
+    * The document compressed with gzip, produced once on first use.
+    */
+  def gzipped: ByteString = gzip.get
+
+  def isGzipped: Boolean = gzip.isComputed
+}
+
+object RenderedDocument {
+
+  val YamlContentType = "application/yaml"
+
+  private val HttpDateFormat = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC)
+
+  def etag(bytes: ByteString): String = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    bytes.asByteBuffers.foreach(digest.update)
+    "\"" + Base64.getUrlEncoder.withoutPadding.encodeToString(digest.digest()) + "\""
+  }
+
+  def gzip(bytes: ByteString): ByteString = {
+    val out = new ByteArrayOutputStream(math.max(bytes.length / 8, 512))
+    val gzip = new GZIPOutputStream(out) {
+      `def`.setLevel(Deflater.BEST_COMPRESSION)
+    }
+    try {
+      gzip.write(bytes.toArray)
+    } finally {
+      gzip.close()
+    }
+    ByteString.fromArrayUnsafe(out.toByteArray)
+  }
+
+  def httpDate(instant: Instant): String = HttpDateFormat.format(instant)
+
+  def parseHttpDate(date: String): Option[Instant] = {
+    try {
+      Some(Instant.from(HttpDateFormat.parse(date)))
+    } catch {
+      case _: Exception => None
+    }
+  }
+
+  /**
+    * Whether an `If-None-Match` header value matches `etag`, using the weak comparison the header calls for.
+    */
+  def matches(ifNoneMatch: String, etag: String): Boolean = {
+    ifNoneMatch.split(',').exists { candidate =>
+      val tag = candidate.trim
+      tag == "*" || tag.stripPrefix("W/") == etag
+    }
+  }
+}
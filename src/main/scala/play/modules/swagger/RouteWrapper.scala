@@ -2,7 +2,28 @@ package play.modules.swagger
 
 import play.routes.compiler.Route
 
-class RouteWrapper(var router: Map[String, Route]) {
+import scala.jdk.CollectionConverters._
+
+/**
+  * The application routes, keyed by `package.Controller$.method`, along with an index grouping them by controller
+  * and method. The index keeps every route bound to a method, in declaration order, while lookups by name return
+  * the last route declared for it.
+  */
+class RouteWrapper private (initial: RouteWrapper.Routes) {
+
+  @volatile private var routes = initial
+
+  def this(router: Map[String, Route]) = this(RouteWrapper.Routes.index(router, router.values))
+
+  def router: Map[String, Route] = routes.byName
+
+  def router_=(router: Map[String, Route]): Unit = routes = RouteWrapper.Routes.index(router, router.values)
+
+  /**
+    * Replaces the routes, e.g. after the routes files changed, keeping all routes bound to the same method.
+    */
+  def update(declared: Seq[Route]): Unit = routes = RouteWrapper.Routes.index(RouteWrapper.byName(declared), declared)
+
   def get(routeName: String): Option[Route] = router.get(routeName)
 
   def apply(routeName: String): Route = router(routeName)
@@ -10,4 +31,57 @@ class RouteWrapper(var router: Map[String, Route]) {
   def exists(routeName: String): Boolean = router.contains(routeName)
 
   def getAll: Map[String, Route] = router
+
+  /**
+    * The routes bound to each method of `cls`, keyed by method name in the order the methods are first routed.
+    */
+  def forController(cls: Class[_]): java.util.Map[String, java.util.List[Route]] =
+    routes.byController.getOrElse(RouteWrapper.controllerKey(cls), java.util.Collections.emptyMap())
+
+  /**
+    * The class names of the controllers bound to at least one route matching `p`, sorted, found without loading
+    * any of them.
+    */
+  def controllersRouted(p: Route => Boolean): java.util.List[String] =
+    routes.byController.collect {
+      case (controller, byMethod) if byMethod.values.asScala.exists(_.asScala.exists(p)) => controller.stripSuffix("$")
+    }.toSeq.sorted.asJava
+}
+
+object RouteWrapper {
+
+  /**
+    * Wraps routes in declaration order, keeping all routes bound to the same method.
+    */
+  def fromRoutes(routes: Seq[Route]): RouteWrapper =
+    new RouteWrapper(Routes.index(byName(routes), routes))
+
+  private def byName(routes: Seq[Route]): Map[String, Route] = routes.map(route => routeName(route) -> route).toMap
+
+  def routeName(route: Route): String = s"${controllerKey(route)}.${route.call.method}"
+
+  private def controllerKey(route: Route): String =
+    (route.call.packageName.toSeq :+ (route.call.controller + "$")).mkString(".")
+
+  private def controllerKey(cls: Class[_]): String = {
+    val name = cls.getCanonicalName
+    if (name.contains("$")) name else name + "$"
+  }
+
+  private final case class Routes(
+    byName: Map[String, Route],
+    byController: Map[String, java.util.Map[String, java.util.List[Route]]])
+
+  private object Routes {
+    def index(byName: Map[String, Route], declared: Iterable[Route]): Routes = {
+      val byController = declared.toSeq.groupBy(controllerKey(_: Route)).map { case (controller, routes) =>
+        val byMethod = new java.util.LinkedHashMap[String, java.util.List[Route]]()
+        for (route <- routes) {
+          byMethod.computeIfAbsent(route.call.method, _ => new java.util.ArrayList[Route]()).add(route)
+        }
+        controller -> java.util.Collections.unmodifiableMap[String, java.util.List[Route]](byMethod)
+      }
+      Routes(byName, byController)
+    }
+  }
 }
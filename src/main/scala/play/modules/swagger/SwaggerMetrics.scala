@@ -0,0 +1,97 @@
+package play.modules.swagger
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+import play.modules.swagger.util.Histogram
+
+import scala.collection.immutable.TreeMap
+import scala.jdk.CollectionConverters._
+
+/**
+  * Receives the measurements taken while listings are built and served: the duration of each phase, counters
+  * such as cache requests and misses, and the sizes of rendered documents and responses. Implementations are
+  * called on request threads and must be thread safe and cheap.
+  *
+  * A custom implementation, e.g. forwarding to an application's metrics library, is configured with
+  * `swagger.api.metrics.class` and needs a public no-argument constructor.
+  */
+trait SwaggerMetrics {
+
+  def time(name: String, nanos: Long): Unit
+
+  def count(name: String, delta: Long): Unit
+
+  def size(name: String, bytes: Long): Unit
+
+  /**
+    * The current values, keyed by metric and statistic, e.g. `reader.read.p99Millis`. Used by the JMX bean and
+    * the metrics route; implementations publishing elsewhere may return an empty map.
+    */
+  def snapshot: Map[String, Double]
+
+  final def timed[T](name: String)(block: => T): T = {
+    val start = System.nanoTime()
+    try {
+      block
+    } finally {
+      time(name, System.nanoTime() - start)
+    }
+  }
+}
+
+object SwaggerMetrics {
+
+  object Noop extends SwaggerMetrics {
+    override def time(name: String, nanos: Long): Unit = ()
+    override def count(name: String, delta: Long): Unit = ()
+    override def size(name: String, bytes: Long): Unit = ()
+    override def snapshot: Map[String, Double] = Map.empty
+  }
+
+  /**
+    * An instance of `className`, or the in-memory implementation if no class is configured.
+    */
+  def load(className: Option[String], classLoader: ClassLoader): SwaggerMetrics = className match {
+    case Some(name) if name.nonEmpty =>
+      classLoader.loadClass(name).getDeclaredConstructor().newInstance().asInstanceOf[SwaggerMetrics]
+    case _ =>
+      new InMemorySwaggerMetrics
+  }
+}
+
+/**
+  * Keeps every metric in memory, timers and sizes as histograms.
+  */
+class InMemorySwaggerMetrics extends SwaggerMetrics {
+
+  private val timers = new ConcurrentHashMap[String, Histogram]()
+  private val sizes = new ConcurrentHashMap[String, Histogram]()
+  private val counters = new ConcurrentHashMap[String, LongAdder]()
+
+  override def time(name: String, nanos: Long): Unit = timers.computeIfAbsent(name, _ => new Histogram).record(nanos)
+
+  override def count(name: String, delta: Long): Unit = counters.computeIfAbsent(name, _ => new LongAdder).add(delta)
+
+  override def size(name: String, bytes: Long): Unit = sizes.computeIfAbsent(name, _ => new Histogram).record(bytes)
+
+  override def snapshot: Map[String, Double] = {
+    val millis = TimeUnit.MILLISECONDS.toNanos(1).toDouble
+    val timerValues = timers.asScala.toSeq.flatMap { case (name, histogram) =>
+      statistics(name, histogram, "Millis", _ / millis)
+    }
+    val sizeValues = sizes.asScala.toSeq.flatMap { case (name, histogram) =>
+      statistics(name, histogram, "Bytes", identity)
+    }
+    val counterValues = counters.asScala.toSeq.map { case (name, counter) => name -> counter.sum.toDouble }
+    TreeMap(timerValues ++ sizeValues ++ counterValues: _*)
+  }
+
+  private def statistics(name: String, histogram: Histogram, unit: String, scale: Double => Double): Seq[(String, Double)] = Seq(
+    s"$name.count" -> histogram.count.toDouble,
+    s"$name.mean$unit" -> scale(histogram.mean),
+    s"$name.p50$unit" -> scale(histogram.percentile(0.5).toDouble),
+    s"$name.p99$unit" -> scale(histogram.percentile(0.99).toDouble),
+    s"$name.max$unit" -> scale(histogram.max.toDouble))
+}
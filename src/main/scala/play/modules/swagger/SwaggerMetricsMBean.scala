@@ -0,0 +1,80 @@
+package play.modules.swagger
+
+import java.lang.management.ManagementFactory
+
+import javax.management.Attribute
+import javax.management.AttributeList
+import javax.management.AttributeNotFoundException
+import javax.management.DynamicMBean
+import javax.management.InstanceAlreadyExistsException
+import javax.management.MBeanAttributeInfo
+import javax.management.MBeanInfo
+import javax.management.MBeanOperationInfo
+import javax.management.ObjectInstance
+import javax.management.ObjectName
+import javax.management.ReflectionException
+
+/**
+  * Exposes the snapshot of a [[SwaggerMetrics]] as read-only JMX attributes, one per metric and statistic.
+  */
+class SwaggerMetricsMBean(metrics: SwaggerMetrics) extends DynamicMBean {
+
+  override def getAttribute(attribute: String): AnyRef =
+    java.lang.Double.valueOf(metrics.snapshot.getOrElse(attribute, throw new AttributeNotFoundException(attribute)))
+
+  override def getAttributes(attributes: Array[String]): AttributeList = {
+    val snapshot = metrics.snapshot
+    val list = new AttributeList()
+    for (name <- attributes; value <- snapshot.get(name)) {
+      list.add(new Attribute(name, java.lang.Double.valueOf(value)))
+    }
+    list
+  }
+
+  override def setAttribute(attribute: Attribute): Unit = throw new AttributeNotFoundException(attribute.getName + " is read-only")
+
+  override def setAttributes(attributes: AttributeList): AttributeList = new AttributeList()
+
+  override def invoke(actionName: String, params: Array[AnyRef], signature: Array[String]): AnyRef =
+    throw new ReflectionException(new NoSuchMethodException(actionName))
+
+  override def getMBeanInfo: MBeanInfo = {
+    val attributes = metrics.snapshot.keys.map { name =>
+      new MBeanAttributeInfo(name, classOf[java.lang.Double].getName, name, true, false, false)
+    }.toArray
+    new MBeanInfo(getClass.getName, "Swagger listing metrics", attributes, null, Array.empty[MBeanOperationInfo], null)
+  }
+}
+
+object SwaggerMetricsMBean {
+
+  val Domain = "play.modules.swagger"
+
+  /**
+    * Registers `metrics` with the platform MBean server as `play.modules.swagger:type=Metrics,name=<name>`.
+    * Application instances sharing the server get their own bean: if the name is taken, a `-2`, `-3`, ...
+    * suffix is added to it.
+    */
+  def register(metrics: SwaggerMetrics, name: String): ObjectInstance = {
+    val server = ManagementFactory.getPlatformMBeanServer
+    val bean = new SwaggerMetricsMBean(metrics)
+    def attempt(n: Int): ObjectInstance = {
+      val objectName = new ObjectName(s"$Domain:type=Metrics,name=${ObjectName.quote(if (n == 1) name else s"$name-$n")}")
+      try server.registerMBean(bean, objectName)
+      catch {
+        case _: InstanceAlreadyExistsException => attempt(n + 1)
+      }
+    }
+    attempt(1)
+  }
+
+  /**
+    * Unregisters the bean `register` returned, leaving those of other application instances in place.
+    */
+  def unregister(instance: ObjectInstance): Unit = {
+    val server = ManagementFactory.getPlatformMBeanServer
+    if (server.isRegistered(instance.getObjectName)) {
+      server.unregisterMBean(instance.getObjectName)
+    }
+  }
+}
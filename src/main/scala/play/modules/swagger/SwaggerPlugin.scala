@@ -17,21 +17,46 @@
 package play.modules.swagger
 
 import java.io.File
+import java.io.InputStream
+import java.nio.file.Paths
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.ServiceLoader
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
+import akka.util.ByteString
 import io.swagger.config.FilterFactory
 import io.swagger.config.Scanner
 import io.swagger.config.ScannerFactory
+import io.swagger.converter.ModelConverter
+import io.swagger.converter.ModelConverters
 import io.swagger.core.filter.SwaggerSpecFilter
 import javax.inject.Inject
 import play.api.Configuration
 import play.api.Environment
 import play.api.Logger
+import play.api.inject.ApplicationLifecycle
+import play.api.inject.DefaultApplicationLifecycle
+import play.modules.swagger.util.Bulkhead
+import play.modules.swagger.util.FileWatcher
+import play.modules.swagger.util.SingleFlightCache
+import play.routes.compiler.Rule
+import play.routes.compiler.RoutesCompilationError
 import play.routes.compiler.RoutesFileParser
 import play.routes.compiler.StaticPart
 import play.routes.compiler.{Include => PlayInclude}
 import play.routes.compiler.{Route => PlayRoute}
 
-import scala.io.Source
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.duration.Duration
+import scala.jdk.CollectionConverters._
+import scala.util.Failure
+import scala.util.Success
 
 trait SwaggerPlugin {
   def config: PlaySwaggerConfig
@@ -40,28 +65,68 @@ trait SwaggerPlugin {
   def scanner: Scanner
   def routes: RouteWrapper
   def swaggerSpecFilter: Option[SwaggerSpecFilter]
+  def metrics: SwaggerMetrics = SwaggerMetrics.Noop
+
+  /**
+    * Resolves the models of the listings read by [[playReader]]
+    */
+  def modelConverters: ModelConverters = ModelConverters.getInstance()
+
+  /**
+    * Runs the building, filtering and serialization of listings for [[controllers.ApiHelpController]]
+    */
+  def executionContext: ExecutionContext = ExecutionContext.global
+
+  /**
+    * Limits the requests run through [[swaggerSpecFilter]] at once
+    */
+  lazy val filterBulkhead: Bulkhead = new Bulkhead(config.filterMaxConcurrent, config.filterMaxQueued)
+
+  /**
+    * Completes once the documentation can be served without building it, failing if the warm-up failed
+    */
+  def ready: Future[Unit] = Future.unit
+
+  def isReady: Boolean = ready.value.exists(_.isSuccess)
 }
 
-class SwaggerPluginImpl @Inject()(environment: Environment, configuration: Configuration) extends SwaggerPlugin {
+class SwaggerPluginImpl @Inject()(environment: Environment, configuration: Configuration,
+  lifecycle: ApplicationLifecycle) extends SwaggerPlugin {
+
+  def this(environment: Environment, configuration: Configuration) =
+    this(environment, configuration, new DefaultApplicationLifecycle)
 
   private val logger = Logger("swagger")
 
+  private val initStart = System.nanoTime()
+
   lazy val config: PlaySwaggerConfig = PlaySwaggerConfig(configuration)
 
-  lazy val routes = new RouteWrapper({
-    val routesFile = configuration.get[Option[String]]("play.http.router") match {
-      case None => "routes"
-      case Some(value) => SwaggerPluginHelper.playRoutesClassNameToFileName(value)
-    }
+  override lazy val metrics: SwaggerMetrics = SwaggerMetrics.load(config.metricsClass, environment.classLoader)
+
+  /**
+    * A pool of `swagger.api.executor.threads` daemon threads, released when idle and shut down with the application
+    */
+  override lazy val executionContext: ExecutionContext = {
+    val threads = math.max(config.executorThreads, 1)
+    val counter = new AtomicInteger()
+    val executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](),
+      (runnable: Runnable) => {
+        val thread = new Thread(runnable, s"swagger-listing-${counter.incrementAndGet()}")
+        thread.setDaemon(true)
+        thread
+      })
+    executor.allowCoreThreadTimeOut(true)
+    lifecycle.addStopHook(() => Future.successful(executor.shutdown()))
+    ExecutionContext.fromExecutorService(executor)
+  }
 
-    val routesList = SwaggerPluginHelper.parseRoutes(routesFile, "", environment)
+  private lazy val routesFile = configuration.get[Option[String]]("play.http.router") match {
+    case None => "routes"
+    case Some(value) => SwaggerPluginHelper.playRoutesClassNameToFileName(value)
+  }
 
-    Map(routesList map { route =>
-      val call = route.call
-      val routeName = (call.packageName.toSeq ++ Seq(call.controller + "$", call.method)).mkString(".")
-      routeName -> route
-    }: _*)
-  })
+  lazy val routes = RouteWrapper.fromRoutes(SwaggerPluginHelper.parseRoutes(routesFile, "", environment))
 
   lazy val scanner = new PlayApiScanner(config, routes, environment)
 
@@ -80,13 +145,95 @@ class SwaggerPluginImpl @Inject()(environment: Environment, configuration: Confi
       None
   }
 
-  lazy val playReader = new PlayReader(config, routes, null)
-  lazy val apiListingCache = new ApiListingCache(scanner, playReader)
+  /**
+    * With `swagger.api.isolated`, a registry of this plugin's own, holding the converters registered as services
+    * on the application's class loader. Otherwise swagger-core's shared instance.
+    */
+  override lazy val modelConverters: ModelConverters = if (config.isolated) {
+    SwaggerPluginHelper.newModelConverters(environment.classLoader)
+  } else {
+    ModelConverters.getInstance()
+  }
+
+  lazy val playReader = new PlayReader(config, routes, null, modelConverters)
+  lazy val apiListingCache = new ApiListingCache(scanner, playReader, config, config.prebuilt.map { resource =>
+    environment.resourceAsStream(resource).map(SwaggerPluginHelper.readFully).getOrElse {
+      throw new IllegalStateException(s"Prebuilt listing '$resource' not found on the classpath")
+    }
+  }, metrics, ListingGrouping(config, routes, playReader,
+    () => SwaggerPluginHelper.includePrefixes(routesFile, environment)))
+
+  /**
+    * With `swagger.api.warmup`, the listing of the configured host in the current cached listings, built and
+    * rendered on [[executionContext]] unless it is already. A failed build is started again by a later call, and
+    * listings dropped by an invalidation or replaced by a refresh are rendered again. Otherwise completed at once,
+    * listings being built by the first request for them.
+    */
+  override def ready: Future[Unit] = if (config.warmup) {
+    implicit val ec: ExecutionContext = executionContext
+    apiListingCache.renderedAsync(config.host).map(_.prerender(scanner.getPrettyPrint))
+  } else {
+    Future.unit
+  }
+
+  /**
+    * Whether the current cached listings hold the rendered listing of the configured host, starting to build and
+    * render it if they don't. Always true without `swagger.api.warmup`.
+    */
+  override def isReady: Boolean = !config.warmup || {
+    val rendered = apiListingCache.cachedRendered(config.host).exists { listing =>
+      listing.renderedDocument(yaml = false, scanner.getPrettyPrint).isDefined
+    }
+    if (!rendered) {
+      ready.failed.foreach(e => logger.error("Swagger: failed to warm up the listing", e))(ExecutionContext.global)
+    }
+    rendered
+  }
+
+  /**
+    * Parses the routes files again and rebuilds the cached listings in the background.
+    */
+  def reloadRoutes(): Future[Unit] = {
+    routes.update(SwaggerPluginHelper.parseRoutes(routesFile, "", environment))
+    apiListingCache.refresh()(executionContext)
+  }
+
+  private def watchRoutes(): Unit = {
+    val files = SwaggerPluginHelper.routesFileNames(routesFile, environment)
+      .flatMap(environment.resource)
+      .filter(_.getProtocol == "file")
+      .map(url => Paths.get(url.toURI))
+    if (files.nonEmpty) {
+      logger.info(s"Swagger: watching routes files $files")
+      val watcher = new FileWatcher(files, "swagger-routes-watcher")({
+        logger.info("Swagger: routes changed, reloading")
+        reloadRoutes().failed.foreach(e => logger.error("Failed to reload routes", e))(ExecutionContext.global)
+      })
+      lifecycle.addStopHook(() => Future.successful(watcher.close()))
+    }
+  }
 
   logger.info("Swagger: starting initialization")
-  // eagerly initialize and set up global state required by Swagger
-  swaggerSpecFilter foreach FilterFactory.setFilter
-  ScannerFactory.setScanner(scanner)
+  // publish the scanner and filter to swagger-core's global factories, for code reading them from there
+  if (!config.isolated) {
+    swaggerSpecFilter foreach FilterFactory.setFilter
+    ScannerFactory.setScanner(scanner)
+  }
+  if (config.watchRoutes) {
+    watchRoutes()
+  }
+  if (config.warmup) {
+    ready.onComplete {
+      case Success(_) => logger.info("Swagger: listing warmed up")
+      case Failure(e) => logger.error("Swagger: failed to warm up the listing", e)
+    }(ExecutionContext.global)
+  }
+  if (config.metricsJmx) {
+    val name = Option(environment.rootPath.toPath.toAbsolutePath.normalize.getFileName).fold("application")(_.toString)
+    val bean = SwaggerMetricsMBean.register(metrics, name)
+    lifecycle.addStopHook(() => Future.successful(SwaggerMetricsMBean.unregister(bean)))
+  }
+  metrics.time("plugin.init", System.nanoTime() - initStart)
   logger.info("Swagger: initialization done")
 }
 
@@ -95,25 +242,65 @@ object SwaggerPluginHelper {
 
   def playRoutesClassNameToFileName(className: String): String = className.replace(".Routes", ".routes")
 
+  /**
+    * A model converters registry set up like swagger-core's shared instance, with the converters registered as
+    * services on `classLoader`.
+    */
+  def newModelConverters(classLoader: ClassLoader): ModelConverters = {
+    val converters = new ModelConverters()
+    converters.addPackageToSkip("java.lang")
+    ServiceLoader.load(classOf[ModelConverter], classLoader).asScala.foreach(converters.addConverter)
+    converters
+  }
+
+  def readFully(stream: InputStream): ByteString = {
+    try {
+      val builder = ByteString.newBuilder
+      val buffer = new Array[Byte](8192)
+      var read = stream.read(buffer)
+      while (read != -1) {
+        builder.putBytes(buffer, 0, read)
+        read = stream.read(buffer)
+      }
+      builder.result()
+    } finally {
+      stream.close()
+    }
+  }
+
+  /**
+    * Parsed routes files, keyed by file name and a digest of their content, so files that haven't changed are not
+    * parsed again when the plugin is created anew, as happens on each reload in dev mode.
+    */
+  private val parsedFiles = new SingleFlightCache[(String, String), Either[Seq[RoutesCompilationError], List[Rule]]](256)
+
   // Parses multiple route files recursively
-  def parseRoutes(routesFile: String, prefix: String, env: Environment): List[PlayRoute] = {
-    logger.debug(s"Processing route file '$routesFile' with prefix '$prefix'")
+  def parseRoutes(routesFile: String, prefix: String, env: Environment): List[PlayRoute] =
+    Await.result(parseRoutesAsync(routesFile, prefix, env)(ExecutionContext.global), Duration.Inf)
 
-    val parsedRoutes = env.resourceAsStream(routesFile).map { stream =>
-      val routesContent = Source.fromInputStream(stream).mkString
-      RoutesFileParser.parseContent(routesContent, new File(routesFile))
-    }.getOrElse(Right(List.empty)) // ignore routes files that don't exist
+  /**
+    * Parses a routes file and, concurrently, the files it includes. Routes are returned in declaration order,
+    * with those of each include in place of the include itself. A file being parsed for another caller is waited
+    * for without holding a thread.
+    */
+  def parseRoutesAsync(routesFile: String, prefix: String, env: Environment)(
+    implicit ec: ExecutionContext): Future[List[PlayRoute]] = Future {
+    logger.debug(s"Processing route file '$routesFile' with prefix '$prefix'")
 
-    val routes = parsedRoutes.getOrElse(throw new NoSuchElementException("Parsed routes not found!")).collect {
+    env.resourceAsStream(routesFile).map { stream =>
+      parseRulesAsync(routesFile, readFully(stream))
+    }.getOrElse(Future.successful(Right(List.empty))) // ignore routes files that don't exist
+  }.flatMap(identity).flatMap { parsedRoutes =>
+    val parts = parsedRoutes.getOrElse(throw new NoSuchElementException("Parsed routes not found!")).collect {
       case route: PlayRoute =>
         logger.debug(s"Adding route '$route'")
-        (prefix, route.path.parts) match {
+        Future.successful((prefix, route.path.parts) match {
           case ("", _) => Seq(route)
           case (_, Seq()) => Seq(route.copy(path = route.path.copy(parts = StaticPart(prefix) +: route.path.parts)))
           case (_, Seq(StaticPart(""))) => Seq(route.copy(path = route.path.copy(parts = StaticPart(prefix) +: route.path.parts)))
           case (_, Seq(StaticPart("/"))) => Seq(route.copy(path = route.path.copy(parts = StaticPart(prefix) +: route.path.parts)))
           case (_, _) => Seq(route.copy(path = route.path.copy(parts = StaticPart(prefix) +: StaticPart("/") +: route.path.parts)))
-        }
+        })
       case include: PlayInclude =>
         logger.debug(s"Processing route include $include")
         val newPrefix = if (prefix == "") {
@@ -121,9 +308,46 @@ object SwaggerPluginHelper {
         } else {
           s"$prefix/${include.prefix}"
         }
-        parseRoutes(playRoutesClassNameToFileName(include.router), newPrefix, env)
+        parseRoutesAsync(playRoutesClassNameToFileName(include.router), newPrefix, env)
+    }
+    Future.sequence(parts).map { routes =>
+      logger.debug(s"Finished processing route file '$routesFile'")
+      routes.flatten
+    }
+  }
+
+  /**
+    * The prefixes of the routes files included by `routesFile`, in declaration order.
+    */
+  def includePrefixes(routesFile: String, env: Environment): List[String] = {
+    val rules = env.resourceAsStream(routesFile).map(stream => parseRules(routesFile, readFully(stream)))
+    rules.flatMap(_.toOption).toList.flatten.collect {
+      case include: PlayInclude => include.prefix
+    }
+  }
+
+  /**
+    * The names of `routesFile` and of the routes files it includes, directly or not.
+    */
+  def routesFileNames(routesFile: String, env: Environment): List[String] = {
+    val rules = env.resourceAsStream(routesFile).map(stream => parseRules(routesFile, readFully(stream)))
+    routesFile :: rules.flatMap(_.toOption).toList.flatten.collect {
+      case include: PlayInclude => routesFileNames(playRoutesClassNameToFileName(include.router), env)
     }.flatten
-    logger.debug(s"Finished processing route file '$routesFile'")
-    routes
+  }
+
+  private def parseRules(routesFile: String, content: ByteString): Either[Seq[RoutesCompilationError], List[Rule]] =
+    Await.result(parseRulesAsync(routesFile, content), Duration.Inf)
+
+  /**
+    * The rules of a routes file, parsed by the caller unless they are cached or being parsed by another caller.
+    */
+  private def parseRulesAsync(routesFile: String,
+    content: ByteString): Future[Either[Seq[RoutesCompilationError], List[Rule]]] = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    content.asByteBuffers.foreach(digest.update)
+    parsedFiles.getFuture((routesFile, Base64.getEncoder.encodeToString(digest.digest()))) {
+      RoutesFileParser.parseContent(content.utf8String, new File(routesFile))
+    }
   }
 }
@@ -0,0 +1,35 @@
+package play.modules.swagger
+
+import java.io.File
+import java.nio.file.Files
+
+import play.api.Configuration
+import play.api.Environment
+import play.api.Logger
+import play.api.Mode
+
+/**
+  * Writes the listing of the application found on the classpath to a file, running the same scanning and
+  * reflection as [[SwaggerPluginImpl]]. Packaging the file and pointing `swagger.api.prebuilt` at it lets the
+  * application serve its listing without scanning controllers at runtime.
+  *
+  * Usage: `play.modules.swagger.SwaggerSpecGenerator <output file>`
+  */
+object SwaggerSpecGenerator {
+
+  def main(args: Array[String]): Unit = {
+    require(args.length == 1, "Usage: play.modules.swagger.SwaggerSpecGenerator <output file>")
+    generate(new File(args(0)), Environment(new File("."), Thread.currentThread.getContextClassLoader, Mode.Prod))
+  }
+
+  def generate(output: File, environment: Environment): Unit = {
+    // always scan, even when the application itself is configured to use a prebuilt listing
+    val configuration = Configuration.load(environment) ++ Configuration("swagger.api.prebuilt" -> null)
+    val plugin = new SwaggerPluginImpl(environment, configuration)
+    val document = plugin.apiListingCache.rendered(plugin.config.host).json
+
+    Option(output.getAbsoluteFile.getParentFile).foreach(dir => Files.createDirectories(dir.toPath))
+    Files.write(output.toPath, document.bytes.toArray)
+    Logger("swagger").info(s"Wrote API listing to $output")
+  }
+}
@@ -0,0 +1,88 @@
+package play.modules.swagger.util
+
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.util.Success
+import scala.util.Try
+import scala.util.control.NonFatal
+
+/**
+  * Runs at most `maxConcurrent` tasks at once, keeping up to `maxQueued` more waiting for a slot. Tasks submitted
+  * beyond that are rejected right away instead of piling up.
+  */
+class Bulkhead(maxConcurrent: Int, maxQueued: Int) {
+  require(maxConcurrent > 0, "maxConcurrent must be positive")
+  require(maxQueued >= 0, "maxQueued must not be negative")
+
+  private val waiting = new java.util.ArrayDeque[() => Unit]()
+  private var running = 0
+
+  /**
+    * Runs `work` on `ec` once a slot is free, or returns None if all slots are taken and the queue is full. The slot
+    * is released before the returned future completes.
+    */
+  def apply[T](work: => T)(implicit ec: ExecutionContext): Option[Future[T]] = holding((work, Future.unit))
+
+  /**
+    * Like [[apply]], for work that hands part of the job off, e.g. to a stream. The slot is held after `work`
+    * returns until the future it returns along with its result completes.
+    */
+  def holding[T](work: => (T, Future[_]))(implicit ec: ExecutionContext): Option[Future[T]] = {
+    val promise = Promise[T]()
+    val start = () => {
+      try {
+        ec.execute { () =>
+          Try(work) match {
+            case Success((result, done)) if !done.isCompleted =>
+              promise.success(result)
+              done.onComplete(_ => release())
+            case outcome =>
+              release()
+              promise.complete(outcome.map(_._1))
+          }
+          ()
+        }
+      } catch {
+        case NonFatal(e) =>
+          promise.failure(e)
+          release()
+      }
+    }
+    val admitted = synchronized {
+      if (running < maxConcurrent) {
+        running += 1
+        Some(true)
+      } else if (waiting.size < maxQueued) {
+        waiting.add(start)
+        Some(false)
+      } else {
+        None
+      }
+    }
+    admitted.map { runNow =>
+      if (runNow) {
+        start()
+      }
+      promise.future
+    }
+  }
+
+  /**
+    * Tasks running and waiting
+    */
+  def inFlight: Int = synchronized(running + waiting.size)
+
+  private def release(): Unit = {
+    val next = synchronized {
+      val task = waiting.poll()
+      if (task == null) {
+        running -= 1
+      }
+      task
+    }
+    if (next != null) {
+      next()
+    }
+  }
+}
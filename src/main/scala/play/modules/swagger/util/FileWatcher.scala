@@ -0,0 +1,69 @@
+package play.modules.swagger.util
+
+import java.io.Closeable
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.FileSystems
+import java.nio.file.Path
+import java.nio.file.StandardWatchEventKinds
+import java.nio.file.WatchKey
+
+import play.api.Logger
+
+import scala.jdk.CollectionConverters._
+import scala.util.control.NonFatal
+
+/**
+  * Watches a set of files on a daemon thread and calls `onChange` after any of them is created, modified or
+  * deleted. Changes reported together result in a single call.
+  */
+class FileWatcher(files: Seq[Path], name: String)(onChange: => Unit) extends Closeable {
+
+  private val logger = Logger("swagger")
+
+  private val watchService = FileSystems.getDefault.newWatchService()
+
+  private val watched: Map[WatchKey, Set[Path]] =
+    files.map(_.toAbsolutePath.normalize).groupBy(_.getParent).map { case (dir, paths) =>
+      dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE) -> paths.map(_.getFileName).toSet
+    }
+
+  private val thread = new Thread(() => run(), name)
+  thread.setDaemon(true)
+  thread.start()
+
+  private def run(): Unit = {
+    try {
+      while (true) {
+        val key = watchService.take()
+        var changed = changes(key)
+        var next = watchService.poll()
+        while (next != null) {
+          changed ||= changes(next)
+          next = watchService.poll()
+        }
+        if (changed) {
+          try {
+            onChange
+          } catch {
+            case NonFatal(e) => logger.error(s"Failed to handle changes to $files", e)
+          }
+        }
+      }
+    } catch {
+      case _: ClosedWatchServiceException | _: InterruptedException => // closed
+    }
+  }
+
+  private def changes(key: WatchKey): Boolean = {
+    val names = watched.getOrElse(key, Set.empty)
+    val changed = key.pollEvents().asScala.exists(_.context match {
+      case path: Path => names.contains(path)
+      case _ => false
+    })
+    key.reset()
+    changed
+  }
+
+  override def close(): Unit = watchService.close()
+}
@@ -0,0 +1,79 @@
+package play.modules.swagger.util
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+  * A lock-free histogram of non-negative values. Values up to 15 are counted exactly, larger ones in buckets
+  * of one eighth of a power of two, so percentiles are reported within 12.5% of the recorded values.
+  */
+class Histogram {
+
+  private val buckets = new AtomicLongArray(Histogram.BucketCount)
+  private val counter = new LongAdder
+  private val total = new LongAdder
+  private val maximum = new AtomicLong
+
+  def record(value: Long): Unit = {
+    val v = math.max(value, 0L)
+    buckets.incrementAndGet(Histogram.index(v))
+    counter.increment()
+    total.add(v)
+    maximum.accumulateAndGet(v, (a: Long, b: Long) => math.max(a, b))
+    ()
+  }
+
+  def count: Long = counter.sum
+
+  def max: Long = maximum.get
+
+  def mean: Double = {
+    val n = count
+    if (n == 0) 0d else total.sum.toDouble / n
+  }
+
+  /**
+    * The smallest bucket bound that at least `quantile` of the recorded values don't exceed.
+    */
+  def percentile(quantile: Double): Long = {
+    val target = math.max(1L, math.ceil(quantile * count).toLong)
+    var seen = 0L
+    var i = 0
+    while (i < Histogram.BucketCount) {
+      seen += buckets.get(i)
+      if (seen >= target) {
+        return math.min(Histogram.upperBound(i), max)
+      }
+      i += 1
+    }
+    max
+  }
+}
+
+object Histogram {
+
+  private val Exact = 16
+  private val SubBuckets = 8
+  private val BucketCount = Exact + (62 - 4 + 1) * SubBuckets
+
+  private[util] def index(value: Long): Int = {
+    if (value < Exact) {
+      value.toInt
+    } else {
+      val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+      val sub = ((value >>> (exponent - 3)) & (SubBuckets - 1)).toInt
+      Exact + (exponent - 4) * SubBuckets + sub
+    }
+  }
+
+  private[util] def upperBound(index: Int): Long = {
+    if (index < Exact) {
+      index.toLong
+    } else {
+      val exponent = (index - Exact) / SubBuckets + 4
+      val sub = (index - Exact) % SubBuckets
+      ((SubBuckets + sub).toLong << (exponent - 3)) + (1L << (exponent - 3)) - 1
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package play.modules.swagger.util
+
+/**
+  * A value computed on first use, at most once, like a lazy val. Unlike a lazy val, callers can tell whether it
+  * is computed already without computing it.
+  */
+final class Memo[T <: AnyRef](compute: () => T) {
+
+  @volatile private var value: T = _
+
+  def get: T = {
+    val current = value
+    if (current != null) {
+      current
+    } else {
+      synchronized {
+        if (value == null) {
+          value = compute()
+        }
+        value
+      }
+    }
+  }
+
+  def isComputed: Boolean = value != null
+}
@@ -0,0 +1,97 @@
+package play.modules.swagger.util
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration.Duration
+import scala.jdk.CollectionConverters._
+import scala.util.control.NonFatal
+
+/**
+  * A bounded, least-recently-used cache where each value is computed by a single caller. Concurrent callers
+  * asking for a key that is being loaded wait on the same future instead of loading it again. Failed loads
+  * are not cached: the next caller loads the key again, unless it asks through [[getFutureAsync]], in which case
+  * it is handed the failure, so that a caller which didn't wait for the load can report it.
+  */
+class SingleFlightCache[K, V](maxEntries: Int) {
+  require(maxEntries > 0, "maxEntries must be positive")
+
+  private val entries = new java.util.LinkedHashMap[K, Future[V]](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[K, Future[V]]): Boolean = size > maxEntries
+  }
+
+  def get(key: K)(load: => V): V = Await.result(getFuture(key)(load), Duration.Inf)
+
+  /**
+    * Returns the future holding the value for `key`, loading it on the calling thread if no other caller is.
+    */
+  def getFuture(key: K)(load: => V): Future[V] = lookup(key, handOverFailure = false)(complete(_)(load))
+
+  /**
+    * Returns the future holding the value for `key`, loading it on `ec` if no other caller is. The future is
+    * already completed when the value is cached, or when the last load failed, which is then dropped.
+    */
+  def getFutureAsync(key: K)(load: => V)(implicit ec: ExecutionContext): Future[V] =
+    lookup(key, handOverFailure = true) { promise =>
+      try {
+        ec.execute(() => complete(promise)(load))
+      } catch {
+        case NonFatal(e) =>
+          promise.failure(e)
+          ()
+      }
+    }
+
+  /**
+    * The value cached for `key`, if it is loaded already. Never starts loading it.
+    */
+  def peek(key: K): Option[V] = entries.synchronized(Option(entries.get(key))).flatMap(_.value).flatMap(_.toOption)
+
+  /**
+    * Returns the future registered for `key`, or registers a new one and passes its promise to `start`. A failed
+    * future is dropped, and returned if `handOverFailure` or replaced otherwise.
+    */
+  private def lookup(key: K, handOverFailure: Boolean)(start: Promise[V] => Unit): Future[V] = {
+    val promise = Promise[V]()
+    val existing = entries.synchronized {
+      val current = entries.get(key)
+      if (current != null && current.value.exists(_.isFailure)) {
+        entries.remove(key)
+        if (handOverFailure) {
+          current
+        } else {
+          entries.put(key, promise.future)
+          null
+        }
+      } else {
+        if (current == null) {
+          entries.put(key, promise.future)
+        }
+        current
+      }
+    }
+    if (existing != null) {
+      existing
+    } else {
+      start(promise)
+      promise.future
+    }
+  }
+
+  private def complete(promise: Promise[V])(load: => V): Unit = {
+    try {
+      promise.success(load)
+      ()
+    } catch {
+      case NonFatal(e) =>
+        promise.failure(e)
+        ()
+    }
+  }
+
+  /**
+    * The keys currently cached or being loaded, from least to most recently used.
+    */
+  def keys: Seq[K] = entries.synchronized(entries.keySet.asScala.toList)
+}
@@ -0,0 +1,188 @@
+import java.io.ByteArrayInputStream
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+
+import akka.actor.ActorSystem
+import akka.stream.ActorMaterializer
+import akka.stream.Materializer
+import controllers.ApiHelpController
+import org.specs2.mutable._
+import org.specs2.specification.AfterAll
+import play.api.Configuration
+import play.api.Environment
+import play.api.mvc.RequestHeader
+import play.api.mvc.Result
+import play.api.test.FakeRequest
+import play.api.test.Helpers
+import play.api.test.Helpers._
+import play.modules.swagger.SwaggerPluginImpl
+
+import scala.concurrent.Await
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.io.Source
+
+class ApiHelpControllerSpec extends Specification with AfterAll {
+
+  private implicit val system: ActorSystem = ActorSystem("ApiHelpControllerSpec")
+  private implicit val materializer: Materializer = ActorMaterializer()
+
+  override def afterAll(): Unit = {
+    Await.result(system.terminate(), 30.seconds)
+    ()
+  }
+
+  private class Controller(settings: (String, Any)*) extends ApiHelpController(Helpers.stubControllerComponents(),
+    new SwaggerPluginImpl(Environment.simple(),
+      Configuration.reference ++ Configuration(("play.http.router" -> "delegated.Routes") +: settings: _*))) {
+
+    def stream(request: RequestHeader, data: AnyRef): Result = streamValue(request, data)
+  }
+
+  /**
+    * The response to `action` once the listing it needs is built, requests before that being answered with a 503.
+    */
+  private def whenBuilt(action: => Future[Result]): Future[Result] = {
+    val deadline = System.nanoTime() + 30.seconds.toNanos
+    var result = action
+    while (status(result) == SERVICE_UNAVAILABLE && System.nanoTime() < deadline) {
+      Thread.sleep(10)
+      result = action
+    }
+    result
+  }
+
+  "ApiHelpController" should {
+
+    "stream the same document it serves buffered" in {
+      val settings = Seq("swagger.filter" -> "testdata.AllHiddenFilter")
+      val buffered = new Controller(settings: _*)
+      val streamed = new Controller(settings :+ ("swagger.api.streaming" -> true): _*)
+
+      val expected = whenBuilt(buffered.getResources(FakeRequest("GET", "/swagger.json")))
+      val actual = whenBuilt(streamed.getResources(FakeRequest("GET", "/swagger.json")))
+      val expectedResource = whenBuilt(buffered.getResource("/subdelegated")(FakeRequest("GET", "/api-docs/subdelegated")))
+      val actualResource = whenBuilt(streamed.getResource("/subdelegated")(FakeRequest("GET", "/api-docs/subdelegated")))
+
+      status(actual) must beEqualTo(OK)
+      header(CONTENT_LENGTH, actual) must beNone
+      contentAsString(actual) must beEqualTo(contentAsString(expected))
+      contentAsString(actual) must not(contain("/all"))
+      contentAsString(actualResource) must beEqualTo(contentAsString(expectedResource))
+    }
+
+    "answer with a 503 until the listing is built" in {
+      val result = new Controller().getResources(FakeRequest("GET", "/swagger.json"))
+
+      status(result) must beEqualTo(SERVICE_UNAVAILABLE)
+      header(RETRY_AFTER, result) must beSome("5")
+      contentAsString(result) must contain("being built")
+    }
+
+    "answer with a 500 when the listing fails to build" in {
+      val controller = new Controller("swagger.api.prebuilt" -> "broken-listing.json")
+      val result = whenBuilt(controller.getResources(FakeRequest("GET", "/swagger.json")))
+
+      status(result) must beEqualTo(INTERNAL_SERVER_ERROR)
+      contentAsString(result) must contain("could not be built")
+    }
+
+    "answer conditional requests with the entity tag of the rendered document" in {
+      val controller = new Controller()
+      val result = whenBuilt(controller.getResources(FakeRequest("GET", "/swagger.json")))
+      val etag = header(ETAG, result)
+
+      status(result) must beEqualTo(OK)
+      etag must beSome
+      status(controller.getResources(FakeRequest("GET", "/swagger.json").withHeaders(IF_NONE_MATCH -> etag.get))) must
+        beEqualTo(NOT_MODIFIED)
+      status(controller.getResources(FakeRequest("GET", "/swagger.json").withHeaders(IF_NONE_MATCH -> "\"other\""))) must
+        beEqualTo(OK)
+    }
+
+    "serve the gzipped document to clients accepting gzip" in {
+      val controller = new Controller()
+      val identity = whenBuilt(controller.getResources(FakeRequest("GET", "/swagger.json")))
+      val gzipped = controller.getResources(FakeRequest("GET", "/swagger.json").withHeaders(ACCEPT_ENCODING -> "deflate, gzip"))
+      val refused = controller.getResources(FakeRequest("GET", "/swagger.json").withHeaders(ACCEPT_ENCODING -> "gzip;q=0"))
+
+      header(CONTENT_ENCODING, gzipped) must beSome("gzip")
+      header(VARY, gzipped) must beSome(ACCEPT_ENCODING)
+      header(ETAG, gzipped) must not(beEqualTo(header(ETAG, identity)))
+      val in = new GZIPInputStream(new ByteArrayInputStream(contentAsBytes(gzipped).toArray))
+      Source.fromInputStream(in, "UTF-8").mkString must beEqualTo(contentAsString(identity))
+      header(CONTENT_ENCODING, refused) must beNone
+      contentAsBytes(refused) must beEqualTo(contentAsBytes(identity))
+    }
+
+    "pretty print as asked by the pretty parameter" in {
+      val controller = new Controller()
+      val default = whenBuilt(controller.getResources(FakeRequest("GET", "/swagger.json")))
+      val compact = controller.getResources(FakeRequest("GET", "/swagger.json?pretty=false"))
+      val pretty = controller.getResources(FakeRequest("GET", "/swagger.json?pretty=true"))
+
+      contentAsString(compact) must not(contain("\n"))
+      contentAsString(pretty) must contain("\n")
+      contentAsString(pretty) must beEqualTo(contentAsString(default))
+      play.api.libs.json.Json.parse(contentAsString(compact)) must beEqualTo(play.api.libs.json.Json.parse(contentAsString(pretty)))
+    }
+
+    "serve filtered listings from the cache for requests sharing a cache key" in {
+      val controller = new Controller("swagger.filter" -> "testdata.TenantAllHiddenFilter")
+      def request(tenant: String) = FakeRequest("GET", "/swagger.json").withHeaders("X-Tenant" -> tenant)
+      val unfiltered = whenBuilt(new Controller().getResources(FakeRequest("GET", "/swagger.json")))
+      val first = whenBuilt(controller.getResources(request("a")))
+      val second = controller.getResources(request("a"))
+      val uncached = controller.getResources(FakeRequest("GET", "/swagger.json"))
+      def snapshot = controller.swaggerPlugin.metrics.snapshot
+
+      contentAsString(first) must not(contain("/all"))
+      contentAsString(unfiltered) must contain("/all")
+      contentAsString(second) must beEqualTo(contentAsString(first))
+      header(ETAG, second) must beEqualTo(header(ETAG, first))
+      contentAsString(uncached) must beEqualTo(contentAsString(first))
+      header(ETAG, controller.getResources(request("b"))) must beEqualTo(header(ETAG, first))
+      snapshot.get("cache.filtered.requests") must beSome(3d)
+      snapshot.get("cache.filtered.misses") must beSome(2d)
+      snapshot.get("filter.admitted") must beSome(3d)
+    }
+
+    "answer filtered requests beyond the bulkhead's limits with a 503" in {
+      val controller = new Controller("swagger.filter" -> "testdata.BlockingFilter",
+        "swagger.api.filtering.maxConcurrent" -> 1, "swagger.api.filtering.maxQueued" -> 0)
+      controller.swaggerPlugin.apiListingCache.rendered(controller.swaggerPlugin.config.host)
+
+      val blocked = controller.getResources(FakeRequest("GET", "/swagger.json"))
+      testdata.BlockingFilter.entered.await(30, TimeUnit.SECONDS) must beTrue
+      val rejected = controller.getResources(FakeRequest("GET", "/swagger.json"))
+      testdata.BlockingFilter.release.countDown()
+
+      status(rejected) must beEqualTo(SERVICE_UNAVAILABLE)
+      contentAsString(rejected) must contain("too many filtered requests")
+      status(blocked) must beEqualTo(OK)
+    }
+
+    "hold the filtering slot of a streamed listing until it is written" in {
+      val controller = new Controller("swagger.filter" -> "testdata.AllHiddenFilter", "swagger.api.streaming" -> true,
+        "swagger.api.filtering.maxConcurrent" -> 1, "swagger.api.filtering.maxQueued" -> 0)
+      controller.swaggerPlugin.apiListingCache.rendered(controller.swaggerPlugin.config.host)
+
+      val streamed = controller.getResources(FakeRequest("GET", "/swagger.json"))
+      status(streamed) must beEqualTo(OK)
+      status(controller.getResources(FakeRequest("GET", "/swagger.json"))) must beEqualTo(SERVICE_UNAVAILABLE)
+      contentAsString(streamed) must not(contain("/all"))
+
+      status(whenBuilt(controller.getResources(FakeRequest("GET", "/swagger.json")))) must beEqualTo(OK)
+    }
+
+    "fail the stream when writing the document fails" in {
+      val result = new Controller().stream(FakeRequest("GET", "/swagger.json"), new Exploding)
+
+      Await.result(result.body.consumeData, 30.seconds) must throwA[Exception]
+    }
+  }
+}
+
+class Exploding {
+  def getValue: String = throw new IllegalStateException("cannot be serialized")
+}
@@ -0,0 +1,67 @@
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.specs2.mutable._
+import play.modules.swagger.util.Bulkhead
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.Future
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+
+class BulkheadSpec extends Specification {
+
+  private implicit val ec: ExecutionContext = ExecutionContext.fromExecutor(Executors.newCachedThreadPool())
+
+  "Bulkhead" should {
+
+    "reject tasks beyond its slots and queue" in {
+      val bulkhead = new Bulkhead(2, 1)
+      val started = new CountDownLatch(2)
+      val release = new CountDownLatch(1)
+      val running = new AtomicInteger()
+      val maxRunning = new AtomicInteger()
+
+      def task(): Int = {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), math.max)
+        started.countDown()
+        release.await()
+        running.decrementAndGet()
+      }
+
+      val admitted = (1 to 3).map(_ => bulkhead(task()))
+      started.await()
+      bulkhead(task()) must beNone
+      bulkhead.inFlight must beEqualTo(3)
+      release.countDown()
+
+      Await.result(Future.sequence(admitted.flatten), 10.seconds) must haveSize(3)
+      maxRunning.get must beEqualTo(2)
+      bulkhead.inFlight must beEqualTo(0)
+      bulkhead(1).map(Await.result(_, 10.seconds)) must beSome(1)
+    }
+
+    "free the slot of a failed task" in {
+      val bulkhead = new Bulkhead(1, 0)
+      val failed = bulkhead[Int](throw new IllegalStateException("boom"))
+
+      Await.result(failed.get, 10.seconds) must throwA[IllegalStateException]
+      bulkhead(1).map(Await.result(_, 10.seconds)) must beSome(1)
+    }
+
+    "hold the slot of a task until the work it hands off is done" in {
+      val bulkhead = new Bulkhead(1, 0)
+      val handedOff = Promise[Unit]()
+      val held = bulkhead.holding((1, handedOff.future))
+
+      held.map(Await.result(_, 10.seconds)) must beSome(1)
+      bulkhead(2) must beNone
+      handedOff.success(())
+
+      eventually(bulkhead.inFlight must beEqualTo(0))
+      bulkhead(2).map(Await.result(_, 10.seconds)) must beSome(2)
+    }
+  }
+}
@@ -1,7 +1,12 @@
+import java.io.ByteArrayInputStream
 import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
 
-import io.swagger.config.ScannerFactory
-import io.swagger.models.{HttpMethod, ModelImpl}
+import akka.util.ByteString
+
+import io.swagger.converter.ModelConverters
+import io.swagger.models.{HttpMethod, ModelImpl, Swagger}
 import io.swagger.models.parameters.{BodyParameter, PathParameter, QueryParameter}
 import io.swagger.models.properties.{ArrayProperty, RefProperty}
 import play.modules.swagger._
@@ -10,13 +15,16 @@ import org.specs2.mock.Mockito
 import play.api.Logger
 import play.api.Environment
 import io.swagger.util.Json
-import org.specs2.specification.BeforeAfterAll
 import play.routes.compiler.Route
 
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext
+import scala.concurrent.duration._
+import scala.io.Source
 import scala.jdk.CollectionConverters._
 import play.routes.compiler.{Route => PlayRoute}
 
-class PlayApiListingCacheSpec extends Specification with Mockito with BeforeAfterAll {
+class PlayApiListingCacheSpec extends Specification with Mockito {
 
   // set up mock for Play Router
   val routesList = {
@@ -63,11 +71,6 @@ PUT /api/dog/api/:id testdata.DogController.add0(id:String)
   val playReader = new PlayReader(swaggerConfig, route, null)
   val apiListingCache = new ApiListingCache(scanner, playReader)
 
-  override def afterAll(): Unit = {}
-  override def beforeAll(): Unit = {
-    ScannerFactory.setScanner(scanner)
-  }
-
   "ApiListingCache" should {
 
     "load all API specs" in {
@@ -193,6 +196,251 @@ PUT /api/dog/api/:id testdata.DogController.add0(id:String)
       dogDef.getProperties.containsKey("id") must beTrue
       dogDef.getProperties.containsKey("name") must beTrue
     }
+
+    "keep pre-rendered documents for listings and resources" in {
+      val rendered = apiListingCache.rendered("127.0.0.1")
+      rendered.json.bytes.utf8String must beEqualTo(toJsonString(rendered.swagger))
+      (rendered eq apiListingCache.rendered("127.0.0.1")) must beTrue
+
+      val resource = apiListingCache.resource("127.0.0.1", "/dog")
+      resource.swagger.getPaths.keySet.asScala must beEqualTo(Set("/dog", "/dog/api/{id}"))
+      resource.swagger.getDefinitions must beEqualTo(rendered.swagger.getDefinitions)
+      resource.swagger.getPaths.keySet.asScala.toSeq must beEqualTo(
+        ApiListingCache.subListing(rendered.swagger, "/dog").getPaths.keySet.asScala.toSeq)
+      apiListingCache.resource("127.0.0.1", "/none").swagger.getPaths.isEmpty must beTrue
+      rendered.swagger.getPaths.size must beEqualTo(7)
+      resource.lastModified must beEqualTo(rendered.lastModified)
+    }
+
+    "derive strong entity tags from the rendered content" in {
+      val json = apiListingCache.rendered("127.0.0.1").json
+      json.etag must beEqualTo(RenderedDocument.etag(ByteString(toJsonString(apiListingCache.listing("127.0.0.1")))))
+      json.etag must not(beEqualTo(apiListingCache.rendered("127.0.0.1").yaml.etag))
+      RenderedDocument.matches(s"""W/${json.etag}, "other"""", json.etag) must beTrue
+      RenderedDocument.matches(""""other"""", json.etag) must beFalse
+    }
+
+    "pre-compress rendered documents" in {
+      val json = apiListingCache.rendered("127.0.0.1").json
+      val in = new GZIPInputStream(new ByteArrayInputStream(json.gzipped.toArray))
+      ByteString(Source.fromInputStream(in, "UTF-8").mkString) must beEqualTo(json.bytes)
+      json.gzipped.length must beLessThan(json.bytes.length)
+      json.gzippedEtag must not(beEqualTo(json.etag))
+    }
+
+    "render compact JSON separately from pretty JSON" in {
+      val rendered = apiListingCache.rendered("127.0.0.1")
+      rendered.compactJson.bytes.length must beLessThan(rendered.json.bytes.length)
+      Json.mapper().readTree(rendered.compactJson.bytes.toArray) must beEqualTo(Json.mapper().readTree(rendered.json.bytes.toArray))
+      rendered.jsonDocument(pretty = false).etag must not(beEqualTo(rendered.jsonDocument(pretty = true).etag))
+    }
+
+    "configure pretty printing on the scanner" in {
+      val compactScanner = new PlayApiScanner(swaggerConfig.copy(prettyPrint = false), route, env)
+      compactScanner.getPrettyPrint must beFalse
+      compactScanner.setPrettyPrint(true)
+      compactScanner.getPrettyPrint must beTrue
+    }
+
+    "cache filtered listings per filter key" in {
+      val filterRuns = new AtomicInteger()
+      val onlyCats = (swagger: Swagger) => {
+        filterRuns.incrementAndGet()
+        ApiListingCache.subListing(swagger, "/cat")
+      }
+
+      val tenantA = apiListingCache.filtered("127.0.0.1", None, "tenant-a")(onlyCats)
+      (apiListingCache.filtered("127.0.0.1", None, "tenant-a")(onlyCats) eq tenantA) must beTrue
+      apiListingCache.filtered("127.0.0.1", Some("/cat"), "tenant-a")(onlyCats).swagger.getPaths.keySet.asScala must beEqualTo(Set("/cat"))
+      filterRuns.get must beEqualTo(1)
+
+      apiListingCache.filtered("127.0.0.1", None, "tenant-b")(onlyCats)
+      filterRuns.get must beEqualTo(2)
+    }
+
+    "serve prebuilt listings without scanning" in {
+      val json = apiListingCache.rendered("127.0.0.1").json.bytes
+      val prebuilt = new ApiListingCache(null, null, swaggerConfig, Some(json))
+
+      prebuilt.rendered("127.0.0.1").json.bytes must beEqualTo(json)
+      prebuilt.listing("127.0.0.1").getPaths.keySet must beEqualTo(apiListingCache.listing("127.0.0.1").getPaths.keySet)
+      prebuilt.listing("localhost").getHost must beEqualTo("localhost")
+    }
+
+    "read controllers in parallel with the same result" in {
+      val parallelConfig = swaggerConfig.copy(readerParallelism = 4)
+      val parallelCache = new ApiListingCache(scanner, new PlayReader(parallelConfig, route, null), parallelConfig)
+
+      parallelCache.rendered("127.0.0.1").json.bytes must beEqualTo(apiListingCache.rendered("127.0.0.1").json.bytes)
+    }
+
+    "resolve implicit parameter types with the caller's context class loader when reading in parallel" in {
+      val loaded = java.util.concurrent.ConcurrentHashMap.newKeySet[String]()
+      val recording = new ClassLoader(getClass.getClassLoader) {
+        override def loadClass(name: String): Class[_] = {
+          loaded.add(name)
+          super.loadClass(name)
+        }
+      }
+      val reader = new PlayReader(swaggerConfig.copy(readerParallelism = 4), route, null)
+      val thread = Thread.currentThread
+      val previous = thread.getContextClassLoader
+      thread.setContextClassLoader(recording)
+      try {
+        reader.read(Set[Class[_]](classOf[testdata.DogController], classOf[testdata.CatController]).asJava)
+      } finally {
+        thread.setContextClassLoader(previous)
+      }
+
+      loaded.asScala must contain(allOf("testdata.Dog", "testdata.Cat"))
+    }
+
+    "document every route bound to a method" in {
+      val aliased = play.routes.compiler.RoutesFileParser.parseContent("""
+GET /api/dog testdata.DogController.list
+GET /api/dogs testdata.DogController.list
+      """, new File("")).right.get.collect {
+        case route: PlayRoute => route
+      }
+      val reader = new PlayReader(swaggerConfig, RouteWrapper.fromRoutes(aliased), null)
+      val swagger = reader.read(Set[Class[_]](classOf[testdata.DogController]).asJava)
+
+      swagger.getPaths.keySet.asScala must contain(exactly("/dog", "/dogs"))
+      val operationIds = Seq("/dog", "/dogs").map(swagger.getPath(_).getGet.getOperationId)
+      operationIds.distinct must haveSize(2)
+      operationIds.head must beEqualTo(ApiListingCache.subListing(apiListingCache.listing("127.0.0.1"), "/dog")
+        .getPath("/dog").getGet.getOperationId)
+    }
+
+    "resolve optional primitives and parameters beyond the method's own" in {
+      val catRoutes = play.routes.compiler.RoutesFileParser.parseContent("""
+GET /api/cat43 @testdata.CatController.testIssue43(test_issue_43_param: Option[Int], since: Option[Long])
+      """, new File("")).right.get.collect {
+        case route: PlayRoute => route
+      }
+      val reader = new PlayReader(swaggerConfig, RouteWrapper.fromRoutes(catRoutes), null)
+      val swagger = reader.read(Set[Class[_]](classOf[testdata.CatController]).asJava)
+      val params = swagger.getPath("/cat43").getGet.getParameters.asScala.collect {
+        case p: QueryParameter => p.getName -> s"${p.getType}/${p.getFormat}"
+      }
+
+      params must beEqualTo(Seq("test_issue_43_param" -> "integer/int32", "since" -> "integer/int64",
+        "test_issue_43_implicit_param" -> "integer/int32"))
+    }
+
+    "resolve a response type once per read" in {
+      val dogRoutes = play.routes.compiler.RoutesFileParser.parseContent("""
+GET /api/dog/:id testdata.DogController.get1(id: Long)
+GET /api/dog2/:id testdata.DogController.get2(id: Long)
+      """, new File("")).right.get.collect {
+        case route: PlayRoute => route
+      }
+      val reader = new PlayReader(swaggerConfig, RouteWrapper.fromRoutes(dogRoutes), null)
+      val swagger = reader.read(Set[Class[_]](classOf[testdata.DogController]).asJava)
+      def schema(path: String) = swagger.getPath(path).getGet.getResponses.get("200").getSchema
+
+      schema("/dog/{id}") must beTheSameAs(schema("/dog2/{id}"))
+      swagger.getDefinitions.keySet.asScala must contain("Dog")
+    }
+
+    "reuse what was read for unchanged controllers" in {
+      ControllerFragments.clear()
+      val incrementalConfig = swaggerConfig.copy(readerIncremental = true)
+      def incrementalCache = new ApiListingCache(scanner, new PlayReader(incrementalConfig, route, null), incrementalConfig)
+      val first = incrementalCache.rendered("127.0.0.1")
+      val second = incrementalCache.rendered("127.0.0.1")
+
+      first.json.bytes must beEqualTo(apiListingCache.rendered("127.0.0.1").json.bytes)
+      second.json.bytes must beEqualTo(first.json.bytes)
+      second.swagger.getPath("/dog").getGet must beTheSameAs(first.swagger.getPath("/dog").getGet)
+    }
+
+    "read a resource from the controllers routed under it" in {
+      val lazyConfig = swaggerConfig.copy(readerLazyResources = true)
+      val lazyReader = new PlayReader(lazyConfig, route, null)
+      val metrics = new InMemorySwaggerMetrics
+      val cache = new ApiListingCache(scanner, lazyReader, lazyConfig, None, metrics)
+
+      lazyReader.controllersUnder("/dog").asScala must beEqualTo(Seq("testdata.DogController"))
+      val resource = Await.result(cache.resourceAsync("127.0.0.1", "/dog")(ExecutionContext.global), 30.seconds)
+      resource.swagger.getPaths.keySet.asScala must beEqualTo(Set("/dog", "/dog/api/{id}"))
+      resource.swagger.getDefinitions.keySet.asScala must contain("Dog")
+      resource.swagger.getDefinitions.keySet.asScala must not(contain("Cat"))
+      (cache.resource("127.0.0.1", "/dog") eq resource) must beTrue
+      metrics.snapshot.get("cache.resource.misses") must beSome(1d)
+      metrics.snapshot.get("cache.listing.misses") must beNone
+
+      val unrouted = Await.result(cache.resourceAsync("127.0.0.1", "/none")(ExecutionContext.global), 30.seconds)
+      unrouted.swagger.getPaths.isEmpty must beTrue
+      (cache.resource("127.0.0.1", "/none") eq unrouted) must beTrue
+      (cache.resource("127.0.0.1", "/other") eq unrouted) must beTrue
+      cache.cachedResource("127.0.0.1", "/none") must beSome(beTheSameAs(unrouted))
+      metrics.snapshot.get("cache.resource.misses") must beSome(1d)
+      metrics.snapshot.get("listing.resource.count") must beSome(2d)
+    }
+
+    "hash each class file once when fingerprinting controllers together" in {
+      val classDigests = new java.util.HashMap[Class[_], Array[Byte]]()
+      val controllers = Seq(classOf[testdata.DogController], classOf[testdata.CatController])
+      val fingerprints = controllers.map(cls => ControllerFragments.fingerprint(cls, route.forController(cls), swaggerConfig, classDigests))
+      val dogDigest = classDigests.get(classOf[testdata.Dog])
+
+      fingerprints must beEqualTo(controllers.map(cls => ControllerFragments.fingerprint(cls, route.forController(cls), swaggerConfig)))
+      classDigests.keySet.asScala must contain(allOf[Class[_]](classOf[testdata.DogController], classOf[testdata.Dog]))
+      ControllerFragments.fingerprint(classOf[testdata.DogController], route.forController(classOf[testdata.DogController]),
+        swaggerConfig, classDigests) must beEqualTo(fingerprints.head)
+      classDigests.get(classOf[testdata.Dog]) must beTheSameAs(dogDigest)
+    }
+
+    "fingerprint models named only by an implicit parameter's data type" in {
+      val catRoutes = play.routes.compiler.RoutesFileParser.parseContent("""
+PUT /api/cat @testdata.CatController.add1
+      """, new File("")).right.get.collect {
+        case route: PlayRoute => route
+      }
+      val routes = RouteWrapper.fromRoutes(catRoutes).forController(classOf[testdata.CatController])
+      val classDigests = new java.util.HashMap[Class[_], Array[Byte]]()
+      val fingerprint = ControllerFragments.fingerprint(classOf[testdata.CatController], routes, swaggerConfig, classDigests)
+
+      classDigests.keySet.asScala must contain(classOf[testdata.Cat])
+      classDigests.put(classOf[testdata.Cat], "edited".getBytes)
+      ControllerFragments.fingerprint(classOf[testdata.CatController], routes, swaggerConfig, classDigests) must
+        not(beEqualTo(fingerprint))
+    }
+
+    "keep fragments apart for each model converters registry" in {
+      val cls = classOf[testdata.DogController]
+      val converters = new ModelConverters()
+      val fragment = new Swagger
+      ControllerFragments.put(converters, cls, "fingerprint", fragment)
+
+      ControllerFragments.get(converters, cls, "fingerprint") must beTheSameAs(fragment)
+      ControllerFragments.get(converters, cls, "changed") must beNull
+      ControllerFragments.get(new ModelConverters(), cls, "fingerprint") must beNull
+    }
+
+    "rebuild listings on invalidation and refresh" in {
+      val cache = new ApiListingCache(scanner, playReader, swaggerConfig)
+      val initial = cache.rendered("127.0.0.1")
+      val resource = cache.resource("127.0.0.1", "/dog")
+
+      Await.result(cache.refresh()(ExecutionContext.global), 30.seconds)
+      val refreshed = cache.rendered("127.0.0.1")
+      (refreshed eq initial) must beFalse
+      refreshed.json.bytes must beEqualTo(initial.json.bytes)
+      (cache.resource("127.0.0.1", "/dog") eq resource) must beFalse
+
+      cache.invalidate()
+      (cache.rendered("127.0.0.1") eq refreshed) must beFalse
+    }
+
+    "generate listings at build time" in {
+      val output = File.createTempFile("swagger", ".json")
+      output.deleteOnExit()
+      SwaggerSpecGenerator.generate(output, env)
+
+      Json.mapper().readValue(output, classOf[Swagger]).getSwagger must beEqualTo("2.0")
+    }
   }
 
   def toJsonString(data: Any): String = {
@@ -1,14 +1,12 @@
-import io.swagger.config.ScannerFactory
 import org.specs2.mock.Mockito
 import org.specs2.mutable._
-import org.specs2.specification.BeforeAfterAll
 import play.api.Environment
 import play.modules.swagger._
 import play.routes.compiler.Route
 
 import scala.jdk.CollectionConverters._
 
-class PlayDelegatedApiScannerSpec extends Specification with Mockito with BeforeAfterAll {
+class PlayDelegatedApiScannerSpec extends Specification with Mockito {
 
   val routes: List[Route] =
     SwaggerPluginHelper.parseRoutes("delegation", "/api", Environment.simple())
@@ -28,13 +26,6 @@ class PlayDelegatedApiScannerSpec extends Specification with Mockito with Before
   val playReader = new PlayReader(swaggerConfig, route, null)
   val apiListingCache = new ApiListingCache(scanner, playReader)
 
-  override def afterAll(): Unit = {}
-
-  override def beforeAll(): Unit = {
-    ScannerFactory.setScanner(scanner)
-  }
-
-
   "route parsing" should {
     "separate delegated paths correctly" in {
 
@@ -46,6 +37,11 @@ class PlayDelegatedApiScannerSpec extends Specification with Mockito with Before
       urls must contain("/api/subdelegated/my/action")
       urls must contain("/api/subdelegated")
     }
+
+    "keep included routes in declaration order" in {
+      routes.map(_.call.method) must beEqualTo(List("list3", "list4", "list5", "list", "list2"))
+      SwaggerPluginHelper.parseRoutes("delegation", "/api", Environment.simple()) must beEqualTo(routes)
+    }
   }
 
 }
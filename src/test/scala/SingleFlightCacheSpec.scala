@@ -0,0 +1,77 @@
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.specs2.mutable._
+import play.modules.swagger.util.SingleFlightCache
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+class SingleFlightCacheSpec extends Specification {
+
+  "SingleFlightCache" should {
+
+    "load a key once for concurrent callers" in {
+      val cache = new SingleFlightCache[String, Int](4)
+      val loads = new AtomicInteger()
+      val started = new CountDownLatch(1)
+      val release = new CountDownLatch(1)
+
+      val first = Future(cache.get("host") {
+        started.countDown()
+        release.await()
+        loads.incrementAndGet()
+      })
+      started.await()
+      val others = (1 to 8).map(_ => Future(cache.get("host")(loads.incrementAndGet())))
+      release.countDown()
+
+      Await.result(Future.sequence(first +: others), 10.seconds).distinct must beEqualTo(Seq(1))
+      loads.get must beEqualTo(1)
+    }
+
+    "evict the least recently used keys" in {
+      val cache = new SingleFlightCache[String, String](2)
+      cache.get("a")("a1")
+      cache.get("b")("b1")
+      cache.get("a")("a2")
+      cache.get("c")("c1")
+
+      cache.get("a")("a3") must beEqualTo("a1")
+      cache.get("b")("b2") must beEqualTo("b2")
+    }
+
+    "load a key on the given execution context" in {
+      val cache = new SingleFlightCache[String, String](2)
+      val release = new CountDownLatch(1)
+
+      val pending = cache.getFutureAsync("a") {
+        release.await()
+        Thread.currentThread.getName
+      }
+      pending.isCompleted must beFalse
+      cache.getFutureAsync("a")("a2") must be(pending)
+      release.countDown()
+
+      Await.result(pending, 10.seconds) must not(beEqualTo(Thread.currentThread.getName))
+      cache.getFutureAsync("a")("a3").isCompleted must beTrue
+    }
+
+    "not keep failed loads" in {
+      val cache = new SingleFlightCache[String, String](2)
+      cache.get("a")(throw new IllegalStateException("boom")) must throwA[IllegalStateException]
+      cache.get("a")("a1") must beEqualTo("a1")
+    }
+
+    "hand a failed load to the next asynchronous caller, then load again" in {
+      val cache = new SingleFlightCache[String, String](2)
+      val failed = cache.getFutureAsync("a")(throw new IllegalStateException("boom"))
+      Await.ready(failed, 10.seconds)
+
+      cache.getFutureAsync("a")("a1") must be(failed)
+      Await.result(cache.getFutureAsync("a")("a2"), 10.seconds) must beEqualTo("a2")
+    }
+  }
+}
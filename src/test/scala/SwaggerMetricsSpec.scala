@@ -0,0 +1,81 @@
+import java.io.File
+import java.lang.management.ManagementFactory
+
+import org.specs2.mutable._
+import play.modules.swagger._
+import play.modules.swagger.util.Histogram
+import play.routes.compiler.{Route => PlayRoute}
+import play.api.Environment
+
+class SwaggerMetricsSpec extends Specification {
+
+  "Histogram" should {
+
+    "report percentiles within a bucket of the recorded values" in {
+      val histogram = new Histogram
+      (1L to 1000L).foreach(histogram.record)
+
+      histogram.count must beEqualTo(1000)
+      histogram.max must beEqualTo(1000)
+      histogram.mean must beEqualTo(500.5)
+      histogram.percentile(0.5) must beBetween(500L, 563L)
+      histogram.percentile(0.99) must beBetween(990L, 1000L)
+    }
+  }
+
+  "InMemorySwaggerMetrics" should {
+
+    "snapshot timers, sizes and counters" in {
+      val metrics = new InMemorySwaggerMetrics
+      metrics.time("reader.read", 2000000)
+      metrics.size("render.json", 1024)
+      metrics.count("cache.listing.misses", 1)
+
+      val snapshot = metrics.snapshot
+      snapshot("reader.read.count") must beEqualTo(1d)
+      snapshot("reader.read.maxMillis") must beEqualTo(2d)
+      snapshot("render.json.p99Bytes") must beEqualTo(1024d)
+      snapshot("cache.listing.misses") must beEqualTo(1d)
+    }
+
+    "measure listing builds and cache hits" in {
+      val routes = play.routes.compiler.RoutesFileParser.parseContent("""
+GET /api/dog testdata.DogController.list
+      """, new File("")).right.get.collect {
+        case route: PlayRoute => route
+      }
+      val wrapper = RouteWrapper.fromRoutes(routes)
+      val config = PlaySwaggerConfig.defaultReference.copy(basePath = "/api")
+      val metrics = new InMemorySwaggerMetrics
+      val cache = new ApiListingCache(new PlayApiScanner(config, wrapper, Environment.simple()),
+        new PlayReader(config, wrapper, null), config, None, metrics)
+
+      cache.rendered("localhost").json
+      cache.rendered("localhost")
+
+      val snapshot = metrics.snapshot
+      snapshot("cache.listing.requests") must beEqualTo(2d)
+      snapshot("cache.listing.misses") must beEqualTo(1d)
+      snapshot("reader.read.count") must beEqualTo(1d)
+      snapshot("render.json.count") must beEqualTo(1d)
+    }
+  }
+
+  "SwaggerMetricsMBean" should {
+
+    "register a bean per application instance and unregister only its own" in {
+      val server = ManagementFactory.getPlatformMBeanServer
+      val first = SwaggerMetricsMBean.register(new InMemorySwaggerMetrics, "mbean-spec")
+      val second = SwaggerMetricsMBean.register(new InMemorySwaggerMetrics, "mbean-spec")
+      SwaggerMetricsMBean.unregister(first)
+      try {
+        first.getObjectName.toString must beEqualTo("play.modules.swagger:type=Metrics,name=\"mbean-spec\"")
+        second.getObjectName.toString must beEqualTo("play.modules.swagger:type=Metrics,name=\"mbean-spec-2\"")
+        server.isRegistered(first.getObjectName) must beFalse
+        server.isRegistered(second.getObjectName) must beTrue
+      } finally {
+        SwaggerMetricsMBean.unregister(second)
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+import io.swagger.config.ScannerFactory
+import io.swagger.converter.ModelConverters
+import org.specs2.mutable._
+import play.api.Configuration
+import play.api.Environment
+import play.modules.swagger.ListingGrouping
+import play.modules.swagger.SwaggerPluginImpl
+
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+
+class SwaggerPluginSpec extends Specification {
+
+  private def plugin(settings: (String, Any)*) = new SwaggerPluginImpl(Environment.simple(),
+    Configuration.reference ++ Configuration(("play.http.router" -> "delegated.Routes") +: settings: _*))
+
+  "SwaggerPlugin" should {
+
+    "build the listing in the background when warming up" in {
+      val swaggerPlugin = plugin("swagger.api.warmup" -> true)
+      Await.result(swaggerPlugin.ready, 30.seconds)
+
+      swaggerPlugin.isReady must beTrue
+      swaggerPlugin.metrics.snapshot.get("cache.listing.misses") must beSome(1d)
+      swaggerPlugin.apiListingCache.listing(swaggerPlugin.config.host).getPaths.keySet.asScala must contain("/my/action")
+      swaggerPlugin.metrics.snapshot.get("cache.listing.misses") must beSome(1d)
+    }
+
+    "warm up again once the listings are dropped" in {
+      val swaggerPlugin = plugin("swagger.api.warmup" -> true, "swagger.api.prettyPrint" -> false)
+      Await.result(swaggerPlugin.ready, 30.seconds)
+      swaggerPlugin.apiListingCache.invalidate()
+
+      swaggerPlugin.isReady must beFalse
+      eventually(retries = 300, sleep = 100.millis)(swaggerPlugin.isReady must beTrue)
+      val listing = swaggerPlugin.apiListingCache.rendered(swaggerPlugin.config.host)
+      listing.renderedDocument(yaml = false, pretty = false) must beSome
+      listing.renderedDocument(yaml = false, pretty = true) must beNone
+    }
+
+    "leave the listing to the first request otherwise" in {
+      val swaggerPlugin = plugin()
+
+      swaggerPlugin.isReady must beTrue
+      swaggerPlugin.metrics.snapshot.get("cache.listing.misses") must beNone
+    }
+
+    "keep isolated plugins apart from each other and from swagger-core's globals" in {
+      val plugins = Seq(plugin("swagger.api.isolated" -> true, "swagger.api.host" -> "one"),
+        plugin("swagger.api.isolated" -> true, "swagger.api.host" -> "two"))
+
+      val listings = plugins.map(swaggerPlugin => swaggerPlugin.apiListingCache.listing(swaggerPlugin.config.host))
+      listings.map(_.getHost) must beEqualTo(Seq("one", "two"))
+      listings.map(_.getPaths.containsKey("/my/action")) must beEqualTo(Seq(true, true))
+      plugins.map(_.scanner) must not(contain(be(ScannerFactory.getScanner)))
+      plugins.map(_.modelConverters).distinct must haveSize(2)
+      plugins.map(_.modelConverters) must not(contain(be(ModelConverters.getInstance())))
+    }
+
+    "serve each included routes file as a group, built without the full listing" in {
+      val swaggerPlugin = plugin("swagger.api.grouping" -> "include")
+      val host = swaggerPlugin.config.host
+
+      swaggerPlugin.apiListingCache.groups must beEqualTo(Seq("default", "subdelegated"))
+      val groups = swaggerPlugin.apiListingCache.groups.map(name =>
+        name -> Await.result(swaggerPlugin.apiListingCache.groupAsync(host, name), 30.seconds).map(_.swagger)).toMap
+      groups("default").map(_.getPaths.keySet.asScala.toSet) must beEqualTo(Some(Set("/my/action", "/all")))
+      groups("subdelegated").map(_.getPaths.keySet.asScala.toSet) must
+        beEqualTo(Some(Set("/subdelegated/my/action", "/subdelegated/all", "/subdelegated")))
+      Await.result(swaggerPlugin.apiListingCache.groupAsync(host, "unknown"), 30.seconds) must beNone
+      swaggerPlugin.metrics.snapshot.get("cache.group.misses") must beSome(2d)
+      swaggerPlugin.metrics.snapshot.get("cache.listing.misses") must beNone
+    }
+
+    "not cache unknown group names" in {
+      val swaggerPlugin = plugin("swagger.api.grouping" -> "include", "swagger.api.cache.maxResources" -> 1)
+      val host = swaggerPlugin.config.host
+      def group(name: String) = Await.result(swaggerPlugin.apiListingCache.groupAsync(host, name), 30.seconds)
+
+      group("subdelegated") must beSome
+      (1 to 3).map(i => group(s"unknown-$i")) must beEqualTo(Seq(None, None, None))
+      group("subdelegated") must beSome
+      swaggerPlugin.metrics.snapshot.get("cache.group.misses") must beSome(1d)
+    }
+
+    "group controllers by the tags of their Api annotation" in {
+      val groups = ListingGrouping.ByTag.groups(Seq(classOf[testdata.DocumentController],
+        classOf[testdata.CatController], classOf[testdata.DelegatedController]))
+
+      groups.keys.toSeq must beEqualTo(Seq("Documents", "apitestcats", ListingGrouping.Default))
+      groups("Documents").classes must beEqualTo(Seq(classOf[testdata.DocumentController]))
+      groups("apitestcats").paths must beNone
+    }
+  }
+}
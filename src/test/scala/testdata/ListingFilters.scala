@@ -0,0 +1,45 @@
+package testdata
+
+import java.util.concurrent.CountDownLatch
+import java.util.{List => JList}
+import java.util.{Map => JMap}
+
+import io.swagger.core.filter.AbstractSpecFilter
+import io.swagger.model.ApiDescription
+import io.swagger.models.Operation
+import play.modules.swagger.CacheableSwaggerSpecFilter
+
+/**
+  * Hides the operations of the `/all` paths.
+  */
+class AllHiddenFilter extends AbstractSpecFilter {
+  override def isOperationAllowed(operation: Operation, api: ApiDescription, params: JMap[String, JList[String]],
+    cookies: JMap[String, String], headers: JMap[String, JList[String]]): Boolean = !api.getPath.endsWith("/all")
+}
+
+/**
+  * [[AllHiddenFilter]] cached per `X-Tenant` header, requests without one being filtered every time.
+  */
+class TenantAllHiddenFilter extends AllHiddenFilter with CacheableSwaggerSpecFilter {
+  override def cacheKey(params: JMap[String, JList[String]], cookies: JMap[String, String],
+    headers: JMap[String, JList[String]]): String =
+    Option(headers.get("X-Tenant")).flatMap(values => Option(values).filter(!_.isEmpty)).map(_.get(0)).orNull
+}
+
+/**
+  * Lets every operation through, once [[BlockingFilter.release]] is counted down. Counts [[BlockingFilter.entered]]
+  * down when it starts filtering.
+  */
+class BlockingFilter extends AbstractSpecFilter {
+  override def isOperationAllowed(operation: Operation, api: ApiDescription, params: JMap[String, JList[String]],
+    cookies: JMap[String, String], headers: JMap[String, JList[String]]): Boolean = {
+    BlockingFilter.entered.countDown()
+    BlockingFilter.release.await()
+    true
+  }
+}
+
+object BlockingFilter {
+  val entered = new CountDownLatch(1)
+  val release = new CountDownLatch(1)
+}